@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Measures time-to-first-request of the backend: from JVM launch until
+# GET /api/auth/test answers 200. Prints one tab-separated line per run and a
+# summary line, so results from different builds can be diffed.
+#
+# usage: scripts/startup-benchmark.sh [runs] [jar]
+#   JAVA_OPTS  extra JVM flags, e.g. "-XX:SharedArchiveFile=application/app.jsa"
+#   APP_ARGS   extra application args, e.g. "--spring.profiles.active=prod"
+#   PORT       port to start on (default 8080)
+set -euo pipefail
+
+RUNS=${1:-5}
+JAR=${2:-target/healthops-backend-1.0.0.jar}
+PORT=${PORT:-8080}
+URL="http://localhost:${PORT}/api/auth/test"
+TIMEOUT_S=${TIMEOUT_S:-120}
+
+if [[ ! -f "$JAR" ]]; then
+  echo "jar not found: $JAR (run mvn package first)" >&2
+  exit 1
+fi
+
+now_ms() { date +%s%3N; }
+
+results=()
+echo -e "run\tready_ms"
+for run in $(seq 1 "$RUNS"); do
+  start=$(now_ms)
+  # shellcheck disable=SC2086
+  java ${JAVA_OPTS:-} -jar "$JAR" --server.port="$PORT" ${APP_ARGS:-} > "startup-run-${run}.log" 2>&1 &
+  pid=$!
+  ready=""
+  while (( $(now_ms) - start < TIMEOUT_S * 1000 )); do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "backend exited early, see startup-run-${run}.log" >&2
+      exit 1
+    fi
+    if curl -sf -o /dev/null "$URL"; then
+      ready=$(( $(now_ms) - start ))
+      break
+    fi
+    sleep 0.05
+  done
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+  if [[ -z "$ready" ]]; then
+    echo "backend not ready after ${TIMEOUT_S}s, see startup-run-${run}.log" >&2
+    exit 1
+  fi
+  rm -f "startup-run-${run}.log"
+  results+=("$ready")
+  echo -e "${run}\t${ready}"
+done
+
+sorted=($(printf '%s\n' "${results[@]}" | sort -n))
+count=${#sorted[@]}
+echo -e "summary\tmin=${sorted[0]}\tmedian=${sorted[$(( count / 2 ))]}\tmax=${sorted[$(( count - 1 ))]}"
@@ -0,0 +1,56 @@
+package com.healthops.admission;
+
+import com.healthops.tenant.TenantContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Runs after authentication so callers are keyed by JWT subject; anonymous callers by IP
+public class AdmissionFilter extends OncePerRequestFilter {
+  private final RateLimiter limiter;
+
+  public AdmissionFilter(RateLimiter limiter) {
+    this.limiter = limiter;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getRequestURI().startsWith("/api/") || "OPTIONS".equals(request.getMethod());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    var auth = SecurityContextHolder.getContext().getAuthentication();
+    String role = auth == null || auth instanceof AnonymousAuthenticationToken ? null :
+        auth.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .filter(a -> a.startsWith("ROLE_"))
+            .findFirst()
+            .map(a -> a.substring("ROLE_".length()))
+            .orElse(null);
+    String caller = role != null ? auth.getName() : "ip:" + request.getRemoteAddr();
+    if (role == null) {
+      role = "ANONYMOUS";
+    }
+
+    long waitNanos = limiter.tryAcquire(RateLimiter.caller(TenantContext.current(), caller), role, EndpointClass.of(request));
+    if (waitNanos > 0) {
+      response.setStatus(429);
+      response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+      response.setContentType("application/json");
+      response.getWriter().write("{\"message\":\"Too many requests\"}");
+      return;
+    }
+    chain.doFilter(request, response);
+  }
+}
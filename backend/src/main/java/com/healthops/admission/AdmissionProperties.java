@@ -0,0 +1,26 @@
+package com.healthops.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rate limits per role and endpoint class. Roles are the names used in JWTs, plus
+ * ANONYMOUS for unauthenticated callers (limited per client IP). A class without
+ * a configured limit is not limited for that role.
+ */
+@ConfigurationProperties("admission")
+@Getter @Setter
+public class AdmissionProperties {
+  private boolean enabled = true;
+  private Map<String, Map<EndpointClass, Limit>> limits = new LinkedHashMap<>();
+
+  @Getter @Setter
+  public static class Limit {
+    private double rate;
+    private int burst = 1;
+  }
+}
@@ -0,0 +1,60 @@
+package com.healthops.admission;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the requests of one endpoint class that are in progress at once. A request
+ * that finds every permit taken waits in a bounded queue, first come first served,
+ * for at most {@code maxWait}; when the queue is full it is turned away at once.
+ */
+final class Bulkhead {
+  private final int maxConcurrent;
+  private final int maxQueue;
+  private final long maxWaitNanos;
+  private final Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+
+  Bulkhead(int maxConcurrent, int maxQueue, Duration maxWait) {
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueue = maxQueue;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.permits = new Semaphore(maxConcurrent, true);
+  }
+
+  /** True if the caller got a permit and must {@link #exit} later. */
+  boolean tryEnter() {
+    try {
+      // Untimed tryAcquire() would overtake callers already waiting
+      if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+        return true;
+      }
+      if (queued.incrementAndGet() > maxQueue) {
+        queued.decrementAndGet();
+        return false;
+      }
+      try {
+        return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+      } finally {
+        queued.decrementAndGet();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  void exit() {
+    permits.release();
+  }
+
+  int active() {
+    return maxConcurrent - permits.availablePermits();
+  }
+
+  int queued() {
+    return queued.get();
+  }
+}
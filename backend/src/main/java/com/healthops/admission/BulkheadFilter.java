@@ -0,0 +1,98 @@
+package com.healthops.admission;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+// Runs after rate limiting, so only admitted requests compete for a permit. Streamed
+// responses keep theirs until the async part has finished writing.
+public class BulkheadFilter extends OncePerRequestFilter {
+  // SQLSTATE PostgreSQL reports when statement_timeout cancels a query
+  private static final String QUERY_CANCELED = "57014";
+
+  private final Bulkheads bulkheads;
+
+  public BulkheadFilter(Bulkheads bulkheads) {
+    this.bulkheads = bulkheads;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !bulkheads.isEnabled() || !request.getRequestURI().startsWith("/api/") || "OPTIONS".equals(request.getMethod());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    EndpointClass endpointClass = EndpointClass.of(request);
+    if (!bulkheads.tryEnter(endpointClass)) {
+      unavailable(response, "Server busy, try again shortly");
+      return;
+    }
+    EndpointClassContext.set(endpointClass);
+    try {
+      chain.doFilter(request, response);
+    } catch (ServletException | RuntimeException e) {
+      if (!queryCanceled(e) || response.isCommitted()) {
+        throw e;
+      }
+      bulkheads.statementTimedOut(endpointClass);
+      unavailable(response, "The request took too long and was cancelled");
+    } finally {
+      EndpointClassContext.clear();
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new Release(endpointClass));
+      } else {
+        bulkheads.exit(endpointClass);
+      }
+    }
+  }
+
+  private static void unavailable(HttpServletResponse response, String message) throws IOException {
+    response.resetBuffer();
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    response.setContentType("application/json");
+    response.getWriter().write("{\"message\":\"" + message + "\"}");
+  }
+
+  private static boolean queryCanceled(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof SQLException sql && QUERY_CANCELED.equals(sql.getSQLState())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // The container calls onComplete after timeouts and errors too
+  private final class Release implements AsyncListener {
+    private final EndpointClass endpointClass;
+
+    Release(EndpointClass endpointClass) {
+      this.endpointClass = endpointClass;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      bulkheads.exit(endpointClass);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {}
+
+    @Override
+    public void onError(AsyncEvent event) {}
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
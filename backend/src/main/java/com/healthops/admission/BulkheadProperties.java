@@ -0,0 +1,34 @@
+package com.healthops.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Concurrency limits, connection sub-pools and statement timeouts per endpoint
+ * class. Each configured class gets its own pool in every clinic; a class without
+ * settings shares the clinic's main pool and is not limited.
+ */
+@ConfigurationProperties("bulkheads")
+@Getter @Setter
+public class BulkheadProperties {
+  private boolean enabled = true;
+  private Map<EndpointClass, Settings> classes = new LinkedHashMap<>();
+
+  @Getter @Setter
+  public static class Settings {
+    // Requests served at once; up to max-queue more wait at most max-wait, the rest get 503
+    private int maxConcurrent = 20;
+    private int maxQueue = 20;
+    private Duration maxWait = Duration.ofSeconds(1);
+    // Connections per clinic, how long a request waits for one, and how long a statement
+    // may run before PostgreSQL cancels it
+    private int poolSize = 4;
+    private Duration connectionTimeout = Duration.ofSeconds(5);
+    private Duration statementTimeout = Duration.ofSeconds(30);
+  }
+}
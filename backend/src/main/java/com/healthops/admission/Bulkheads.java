@@ -0,0 +1,80 @@
+package com.healthops.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One {@link Bulkhead} per configured endpoint class, so slow reports or searches
+ * can only tie up their own share of request threads and connections. Publishes
+ * in-flight requests, queue depth, rejections and cancelled statements per class.
+ */
+@Component
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class Bulkheads {
+  private final boolean enabled;
+  private final Map<EndpointClass, Bulkhead> bulkheads = new EnumMap<>(EndpointClass.class);
+  private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+  private final Map<EndpointClass, Counter> timedOut = new EnumMap<>(EndpointClass.class);
+
+  public Bulkheads(BulkheadProperties props, MeterRegistry registry) {
+    this.enabled = props.isEnabled();
+    if (!enabled) {
+      return;
+    }
+    props.getClasses().forEach((endpointClass, settings) -> {
+      Bulkhead bulkhead = new Bulkhead(settings.getMaxConcurrent(), settings.getMaxQueue(), settings.getMaxWait());
+      String tag = endpointClass.name().toLowerCase();
+      bulkheads.put(endpointClass, bulkhead);
+      Gauge.builder("healthops.bulkhead.active", bulkhead, Bulkhead::active)
+          .description("Requests in progress")
+          .tag("class", tag)
+          .register(registry);
+      Gauge.builder("healthops.bulkhead.queued", bulkhead, Bulkhead::queued)
+          .description("Requests waiting for a permit")
+          .tag("class", tag)
+          .register(registry);
+      rejected.put(endpointClass, Counter.builder("healthops.bulkhead.rejected")
+          .description("Requests turned away because the bulkhead and its queue were full")
+          .tag("class", tag)
+          .register(registry));
+      timedOut.put(endpointClass, Counter.builder("healthops.bulkhead.statement.timeouts")
+          .description("Requests whose statement PostgreSQL cancelled after the class's statement timeout")
+          .tag("class", tag)
+          .register(registry));
+    });
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** True if the request may proceed; it must then call {@link #exit} once it is done. */
+  public boolean tryEnter(EndpointClass endpointClass) {
+    Bulkhead bulkhead = bulkheads.get(endpointClass);
+    if (bulkhead == null || bulkhead.tryEnter()) {
+      return true;
+    }
+    rejected.get(endpointClass).increment();
+    return false;
+  }
+
+  public void exit(EndpointClass endpointClass) {
+    Bulkhead bulkhead = bulkheads.get(endpointClass);
+    if (bulkhead != null) {
+      bulkhead.exit();
+    }
+  }
+
+  public void statementTimedOut(EndpointClass endpointClass) {
+    Counter counter = timedOut.get(endpointClass);
+    if (counter != null) {
+      counter.increment();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.healthops.admission;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/** Coarse cost classes of the API; each has its own rate limit per role and its own bulkhead. */
+public enum EndpointClass {
+  REPORTS, SEARCH, WRITES, READS;
+
+  public static EndpointClass of(HttpServletRequest request) {
+    String path = request.getRequestURI();
+    String method = request.getMethod();
+    if (isReport(path, method)) {
+      return REPORTS;
+    }
+    if (path.contains("/search")) {
+      return SEARCH;
+    }
+    return "GET".equals(method) || "HEAD".equals(method) ? READS : WRITES;
+  }
+
+  // Only the routes that build something expensive; polling a report job and fetching its result are cheap
+  private static boolean isReport(String path, String method) {
+    if (path.equals("/api/reports/jobs")) {
+      return "POST".equals(method);
+    }
+    return path.endsWith(".csv")
+        || path.startsWith("/api/admin/exports/")
+        || path.startsWith("/api/admin/analytics/")
+        || path.startsWith("/api/doctor/analytics/")
+        || path.startsWith("/api/admin/profiling/");
+  }
+}
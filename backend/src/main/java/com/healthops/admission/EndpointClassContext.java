@@ -0,0 +1,47 @@
+package com.healthops.admission;
+
+import java.util.function.Supplier;
+
+/**
+ * The endpoint class the current thread serves. Set per request by
+ * {@link BulkheadFilter} and by background work that belongs to a class;
+ * the routing DataSource picks the class's connection sub-pool from it.
+ */
+public final class EndpointClassContext {
+  private static final ThreadLocal<EndpointClass> CURRENT = new ThreadLocal<>();
+
+  private EndpointClassContext() {}
+
+  public static EndpointClass current() {
+    return CURRENT.get();
+  }
+
+  public static void set(EndpointClass endpointClass) {
+    CURRENT.set(endpointClass);
+  }
+
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  public static void runAs(EndpointClass endpointClass, Runnable task) {
+    callAs(endpointClass, () -> {
+      task.run();
+      return null;
+    });
+  }
+
+  public static <T> T callAs(EndpointClass endpointClass, Supplier<T> task) {
+    EndpointClass previous = CURRENT.get();
+    CURRENT.set(endpointClass);
+    try {
+      return task.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.healthops.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one {@link TokenBucket} per caller and endpoint class. Buckets that have
+ * refilled are dropped periodically, so memory follows the number of recently
+ * active callers rather than all callers ever seen.
+ */
+@Component
+@Lazy(false)
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class RateLimiter {
+  private final AdmissionProperties props;
+  private final MeterRegistry registry;
+  private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final Set<String> exempt = ConcurrentHashMap.newKeySet();
+
+  public RateLimiter(AdmissionProperties props, MeterRegistry registry) {
+    this.props = props;
+    this.registry = registry;
+  }
+
+  /** The key {@link #tryAcquire} expects for an authenticated caller (JWT subject) of a clinic. */
+  public static String caller(String tenant, String subject) {
+    return tenant + "|" + subject;
+  }
+
+  /** Admits every request of {@code caller} until {@link #unexempt}; for the startup warm-up. */
+  public void exempt(String caller) {
+    exempt.add(caller);
+  }
+
+  public void unexempt(String caller) {
+    exempt.remove(caller);
+  }
+
+  /** Returns 0 if the request is admitted, otherwise the nanoseconds the caller should wait. */
+  public long tryAcquire(String caller, String role, EndpointClass endpointClass) {
+    if (!props.isEnabled() || exempt.contains(caller)) {
+      return 0;
+    }
+    var roleLimits = props.getLimits().get(role);
+    var limit = roleLimits != null ? roleLimits.get(endpointClass) : null;
+    if (limit == null || limit.getRate() <= 0) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    String key = caller + "|" + endpointClass;
+    long wait = buckets.computeIfAbsent(key, k -> new TokenBucket(limit.getRate(), limit.getBurst(), now)).tryAcquire(now);
+    if (wait > 0) {
+      rejected(role, endpointClass).increment();
+    }
+    return wait;
+  }
+
+  @Scheduled(fixedDelay = 60_000)
+  public void evictIdle() {
+    long now = System.nanoTime();
+    buckets.values().removeIf(bucket -> bucket.isFull(now));
+  }
+
+  private Counter rejected(String role, EndpointClass endpointClass) {
+    return Counter.builder("healthops.admission.rejected")
+        .description("Requests rejected by rate limiting")
+        .tag("role", role)
+        .tag("class", endpointClass.name().toLowerCase())
+        .register(registry);
+  }
+}
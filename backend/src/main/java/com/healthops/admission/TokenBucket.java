@@ -0,0 +1,41 @@
+package com.healthops.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as a single timestamp (the generic cell rate
+ * algorithm): {@code tat} is the time at which the bucket would be full again.
+ * A request is admitted if that lies no more than {@code burst} intervals ahead,
+ * and then pushes it one interval further.
+ */
+final class TokenBucket {
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final AtomicLong tat;
+
+  TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+    this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+    this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+    this.tat = new AtomicLong(nowNanos);
+  }
+
+  /** Returns 0 if a token was taken, otherwise the nanoseconds until one is available. */
+  long tryAcquire(long nowNanos) {
+    while (true) {
+      long current = tat.get();
+      long base = current - nowNanos > 0 ? current : nowNanos;
+      long wait = base - toleranceNanos - nowNanos;
+      if (wait > 0) {
+        return wait;
+      }
+      if (tat.compareAndSet(current, base + intervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  /** True once the bucket has refilled completely and holds no state worth keeping. */
+  boolean isFull(long nowNanos) {
+    return tat.get() - nowNanos <= 0;
+  }
+}
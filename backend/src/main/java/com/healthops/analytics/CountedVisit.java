@@ -0,0 +1,6 @@
+package com.healthops.analytics;
+
+import java.time.Instant;
+
+/** The columns of a visit its term counts depend on. */
+public record CountedVisit(Long doctorId, Instant visitAt, String diagnosis, String prescription) {}
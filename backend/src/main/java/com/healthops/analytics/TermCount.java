@@ -0,0 +1,4 @@
+package com.healthops.analytics;
+
+/** A term and the number of visits that named it. */
+public record TermCount(String term, long visits) {}
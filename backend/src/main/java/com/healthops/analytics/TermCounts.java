@@ -0,0 +1,317 @@
+package com.healthops.analytics;
+
+import com.healthops.admission.EndpointClass;
+import com.healthops.admission.EndpointClassContext;
+import com.healthops.jobs.JobLeases;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import com.healthops.warmup.Warmup;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Maintains {@code visit_term_counts}, the number of visits per day and doctor
+ * that named each diagnosis and prescription term (see {@link VisitTerms}), so
+ * top-K questions never tokenize visit text. Recording, editing or deleting a
+ * visit adjusts its rows in the same transaction. A top-K query splits its day
+ * range into pieces of at most {@code analytics.terms.split-days}, sums each piece
+ * in the database on its own fork-join worker and merges the sums pairwise.
+ * {@link #rebuild} recounts a range from the visits still in the table.
+ */
+@Service
+@Lazy(false)
+public class TermCounts {
+  private static final Logger log = LoggerFactory.getLogger(TermCounts.class);
+
+  private static final String BACKFILL_JOB = "visit-term-backfill";
+
+  private static final String UPSERT_SQL =
+      "INSERT INTO visit_term_counts(field, day, doctor_id, term, visits) VALUES (?, ?, ?, ?, ?) " +
+      "ON CONFLICT (field, day, doctor_id, term) DO UPDATE SET visits = visit_term_counts.visits + excluded.visits";
+  private static final String PRUNE_SQL =
+      "DELETE FROM visit_term_counts WHERE field = ? AND day = ? AND doctor_id = ? AND term = ? AND visits <= 0";
+  private static final String INSERT_SQL =
+      "INSERT INTO visit_term_counts(field, day, doctor_id, term, visits) VALUES (?, ?, ?, ?, ?)";
+
+  // Sorted, so concurrent adjustments lock the rows they share in the same order
+  private record Row(String field, LocalDate day, long doctorId, String term) implements Comparable<Row> {
+    private static final Comparator<Row> ORDER = Comparator.comparing(Row::field).thenComparing(Row::day)
+        .thenComparingLong(Row::doctorId).thenComparing(Row::term);
+
+    @Override
+    public int compareTo(Row other) {
+      return ORDER.compare(this, other);
+    }
+  }
+
+  // doctorId is 0 when the counts of all doctors are summed together
+  private record Key(long doctorId, String term) {}
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final Tenants tenants;
+  private final JobLeases leases;
+  private final int splitDays;
+  private final ForkJoinPool pool;
+
+  public TermCounts(JdbcTemplate jdbc, TransactionTemplate tx, Tenants tenants, JobLeases leases,
+                    @Value("${analytics.terms.split-days:31}") int splitDays,
+                    @Value("${analytics.terms.parallelism:2}") int parallelism) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.tenants = tenants;
+    this.leases = leases;
+    this.splitDays = Math.max(1, splitDays);
+    this.pool = new ForkJoinPool(Math.max(1, parallelism));
+  }
+
+  /**
+   * Moves a visit's counts from its old diagnosis and prescription to the new ones;
+   * the old ones are null for a new visit and the new ones for a deleted visit.
+   * Call it in the transaction that writes the visit.
+   */
+  public void changed(Long doctorId, Instant visitAt, String oldDiagnosis, String oldPrescription,
+                      String newDiagnosis, String newPrescription) {
+    if (doctorId == null || visitAt == null) {
+      return;
+    }
+    LocalDate day = day(visitAt);
+    Map<Row, Integer> deltas = new TreeMap<>();
+    count(deltas, TermField.DIAGNOSIS, day, doctorId, oldDiagnosis, -1);
+    count(deltas, TermField.PRESCRIPTION, day, doctorId, oldPrescription, -1);
+    count(deltas, TermField.DIAGNOSIS, day, doctorId, newDiagnosis, 1);
+    count(deltas, TermField.PRESCRIPTION, day, doctorId, newPrescription, 1);
+    apply(deltas);
+  }
+
+  /**
+   * Takes back the counts of visits that were deleted or detached from their doctor
+   * outside {@link #changed}, e.g. by a bulk statement. Call it in the transaction
+   * that wrote them.
+   */
+  public void removed(List<CountedVisit> visits) {
+    Map<Row, Integer> deltas = new TreeMap<>();
+    for (CountedVisit visit : visits) {
+      if (visit.doctorId() != null && visit.visitAt() != null) {
+        LocalDate day = day(visit.visitAt());
+        count(deltas, TermField.DIAGNOSIS, day, visit.doctorId(), visit.diagnosis(), -1);
+        count(deltas, TermField.PRESCRIPTION, day, visit.doctorId(), visit.prescription(), -1);
+      }
+    }
+    apply(deltas);
+  }
+
+  private void apply(Map<Row, Integer> deltas) {
+    deltas.values().removeIf(delta -> delta == 0);
+    if (deltas.isEmpty()) {
+      return;
+    }
+    jdbc.batchUpdate(UPSERT_SQL, deltas.entrySet().stream().map(e -> args(e.getKey(), e.getValue())).toList());
+    List<Object[]> decreased = deltas.entrySet().stream().filter(e -> e.getValue() < 0)
+        .map(e -> new Object[] {e.getKey().field(), Date.valueOf(e.getKey().day()), e.getKey().doctorId(), e.getKey().term()})
+        .toList();
+    if (!decreased.isEmpty()) {
+      jdbc.batchUpdate(PRUNE_SQL, decreased);
+    }
+  }
+
+  /** The {@code k} terms named by most visits between {@code from} and {@code to}, of one doctor or all if null. */
+  public List<TermCount> top(TermField field, LocalDate from, LocalDate to, Long doctorId, int k) {
+    return topK(sum(field, from, to, doctorId, false).entrySet(), k);
+  }
+
+  /** Like {@link #top}, for each doctor with visits in the range. */
+  public Map<Long, List<TermCount>> topPerDoctor(TermField field, LocalDate from, LocalDate to, int k) {
+    Map<Long, List<Map.Entry<Key, Long>>> byDoctor = new TreeMap<>();
+    for (Map.Entry<Key, Long> entry : sum(field, from, to, null, true).entrySet()) {
+      byDoctor.computeIfAbsent(entry.getKey().doctorId(), id -> new ArrayList<>()).add(entry);
+    }
+    Map<Long, List<TermCount>> top = new TreeMap<>();
+    byDoctor.forEach((doctorId, entries) -> top.put(doctorId, topK(entries, k)));
+    return top;
+  }
+
+  /** Recounts the days from {@code from} to {@code to} from their visits; returns the number of visits counted. */
+  public long rebuild(LocalDate from, LocalDate to) {
+    long visits = 0;
+    for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(splitDays)) {
+      LocalDate end = start.plusDays(splitDays - 1).isAfter(to) ? to : start.plusDays(splitDays - 1);
+      visits += rebuildPiece(start, end);
+    }
+    return visits;
+  }
+
+  /** Recounts every day that has visits. */
+  public long rebuild() {
+    LocalDate[] range = jdbc.queryForObject("SELECT min(visit_at)::date, max(visit_at)::date FROM visits",
+        (rs, i) -> rs.getDate(1) == null ? null : new LocalDate[] {rs.getDate(1).toLocalDate(), rs.getDate(2).toLocalDate()});
+    return range != null ? rebuild(range[0], range[1]) : 0;
+  }
+
+  // Counts the history on the first start after the table was introduced. Whether that happened is
+  // recorded with the job's lease: visits recorded since startup may already have added counts
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Warmup.BEFORE_WARMUP)
+  public void backfill() {
+    tenants.forEach(() -> {
+      if (!leases.hasRun(BACKFILL_JOB)) {
+        leases.runOnce(BACKFILL_JOB, lease -> {
+          if (!leases.hasRun(BACKFILL_JOB)) {
+            log.info("Counted the terms of {} visits", rebuild());
+          }
+        });
+      }
+    });
+  }
+
+  @PreDestroy
+  public void stop() {
+    pool.shutdownNow();
+  }
+
+  private long rebuildPiece(LocalDate from, LocalDate to) {
+    return tx.execute(status -> {
+      // Visits written meanwhile wait with their adjustments until the recount is committed
+      jdbc.execute("LOCK TABLE visit_term_counts IN SHARE ROW EXCLUSIVE MODE");
+      jdbc.update("DELETE FROM visit_term_counts WHERE day BETWEEN ? AND ?", Date.valueOf(from), Date.valueOf(to));
+      Map<Row, Integer> counts = new TreeMap<>();
+      long[] visits = {0};
+      jdbc.query("SELECT doctor_id, visit_at, diagnosis, prescription FROM visits " +
+              "WHERE visit_at >= ? AND visit_at < ? AND doctor_id IS NOT NULL",
+          rs -> {
+            LocalDate day = rs.getTimestamp("visit_at").toLocalDateTime().toLocalDate();
+            long doctorId = rs.getLong("doctor_id");
+            count(counts, TermField.DIAGNOSIS, day, doctorId, rs.getString("diagnosis"), 1);
+            count(counts, TermField.PRESCRIPTION, day, doctorId, rs.getString("prescription"), 1);
+            visits[0]++;
+          },
+          Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+      jdbc.batchUpdate(INSERT_SQL, counts.entrySet().stream().map(e -> args(e.getKey(), e.getValue())).toList());
+      return visits[0];
+    });
+  }
+
+  private Map<Key, Long> sum(TermField field, LocalDate from, LocalDate to, Long doctorId, boolean perDoctor) {
+    if (to.isBefore(from)) {
+      return Map.of();
+    }
+    return pool.invoke(new Sum(TenantContext.current(), EndpointClassContext.current(), field, from, to, doctorId, perDoctor));
+  }
+
+  /** Sums one day range, split in halves until a piece is at most split-days long. */
+  private final class Sum extends RecursiveTask<Map<Key, Long>> {
+    private final String tenant;
+    private final EndpointClass endpointClass;
+    private final TermField field;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Long doctorId;
+    private final boolean perDoctor;
+
+    Sum(String tenant, EndpointClass endpointClass, TermField field, LocalDate from, LocalDate to,
+        Long doctorId, boolean perDoctor) {
+      this.tenant = tenant;
+      this.endpointClass = endpointClass;
+      this.field = field;
+      this.from = from;
+      this.to = to;
+      this.doctorId = doctorId;
+      this.perDoctor = perDoctor;
+    }
+
+    @Override
+    protected Map<Key, Long> compute() {
+      long days = ChronoUnit.DAYS.between(from, to) + 1;
+      if (days <= splitDays) {
+        // Worker threads carry neither the clinic nor the pool of the request
+        return TenantContext.callAs(tenant, () -> EndpointClassContext.callAs(endpointClass, this::query));
+      }
+      LocalDate mid = from.plusDays(days / 2 - 1);
+      Sum left = new Sum(tenant, endpointClass, field, from, mid, doctorId, perDoctor);
+      Sum right = new Sum(tenant, endpointClass, field, mid.plusDays(1), to, doctorId, perDoctor);
+      left.fork();
+      Map<Key, Long> rightSums = right.compute();
+      return merge(left.join(), rightSums);
+    }
+
+    private Map<Key, Long> query() {
+      String sql = "SELECT " + (perDoctor ? "doctor_id" : "0") + " AS doctor_id, term, sum(visits) AS visits " +
+          "FROM visit_term_counts WHERE field = ? AND day BETWEEN ? AND ?" +
+          (doctorId != null ? " AND doctor_id = ?" : "") +
+          " GROUP BY 1, 2";
+      List<Object> args = new ArrayList<>(List.of(field.name(), Date.valueOf(from), Date.valueOf(to)));
+      if (doctorId != null) {
+        args.add(doctorId);
+      }
+      Map<Key, Long> sums = new HashMap<>();
+      jdbc.query(sql, rs -> {
+        sums.put(new Key(rs.getLong("doctor_id"), rs.getString("term")), rs.getLong("visits"));
+      }, args.toArray());
+      return sums;
+    }
+  }
+
+  private static Map<Key, Long> merge(Map<Key, Long> a, Map<Key, Long> b) {
+    Map<Key, Long> larger = a.size() >= b.size() ? a : b;
+    Map<Key, Long> smaller = larger == a ? b : a;
+    smaller.forEach((key, visits) -> larger.merge(key, visits, Long::sum));
+    return larger;
+  }
+
+  // Most visits first, ties by term
+  private static List<TermCount> topK(Iterable<Map.Entry<Key, Long>> entries, int k) {
+    Comparator<TermCount> order = Comparator.comparingLong(TermCount::visits).reversed().thenComparing(TermCount::term);
+    PriorityQueue<TermCount> heap = new PriorityQueue<>(order.reversed());
+    for (Map.Entry<Key, Long> entry : entries) {
+      if (entry.getValue() <= 0) {
+        continue;
+      }
+      heap.add(new TermCount(entry.getKey().term(), entry.getValue()));
+      if (heap.size() > k) {
+        heap.poll();
+      }
+    }
+    List<TermCount> top = new ArrayList<>(heap);
+    top.sort(order);
+    return top;
+  }
+
+  private static void count(Map<Row, Integer> counts, TermField field, LocalDate day, long doctorId, String text, int delta) {
+    for (String term : VisitTerms.of(text)) {
+      counts.merge(new Row(field.name(), day, doctorId, term), delta, Integer::sum);
+    }
+  }
+
+  private static Object[] args(Row row, int visits) {
+    return new Object[] {row.field(), Date.valueOf(row.day()), row.doctorId(), row.term(), visits};
+  }
+
+  // The day visits.visit_at falls on, as ::date computes it
+  private static LocalDate day(Instant visitAt) {
+    return Timestamp.from(visitAt).toLocalDateTime().toLocalDate();
+  }
+}
@@ -0,0 +1,6 @@
+package com.healthops.analytics;
+
+/** The visit text columns whose terms are counted. */
+public enum TermField {
+  DIAGNOSIS, PRESCRIPTION
+}
@@ -0,0 +1,40 @@
+package com.healthops.analytics;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits diagnosis and prescription text into terms: the comma, semicolon or
+ * line separated entries, lower-cased, with whitespace collapsed and surrounding
+ * punctuation removed, so "Viral fever; Dehydration." and "viral  fever, dehydration"
+ * name the same two terms.
+ */
+final class VisitTerms {
+  static final int MAX_LENGTH = 100;
+
+  private static final Pattern SEPARATORS = Pattern.compile("[,;\\r\\n]+");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern EDGES = Pattern.compile("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$");
+
+  private VisitTerms() {}
+
+  /** The distinct terms of {@code text}, in order of appearance; empty for null. */
+  static Set<String> of(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String entry : SEPARATORS.split(text)) {
+      String term = EDGES.matcher(WHITESPACE.matcher(entry).replaceAll(" ")).replaceAll("").toLowerCase(Locale.ROOT);
+      if (term.length() > MAX_LENGTH) {
+        term = term.substring(0, MAX_LENGTH).stripTrailing();
+      }
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+}
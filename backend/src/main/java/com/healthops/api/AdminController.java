@@ -4,6 +4,8 @@ import com.healthops.api.dto.DoctorDtos.CreateDoctorRequest;
 import com.healthops.api.dto.DoctorDtos.UpdateDoctorRequest;
 import com.healthops.api.dto.UserDtos.CreateUserRequest;
 import com.healthops.api.dto.UserDtos.UpdateUserRequest;
+import com.healthops.cache.ResourceVersions;
+import com.healthops.cache.ResponseCache;
 import com.healthops.doctor.Doctor;
 import com.healthops.doctor.DoctorRepository;
 import com.healthops.user.Role;
@@ -12,11 +14,15 @@ import com.healthops.user.UserRepository;
 import com.healthops.user.UserService;
 import com.healthops.visit.VisitRepository;
 import com.healthops.appointment.AppointmentRepository;
+import com.healthops.patient.DuplicatePatientDetector;
 import com.healthops.patient.PatientRepository;
+import com.healthops.patient.PatientSummaries;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -30,16 +36,26 @@ public class AdminController {
   private final VisitRepository visitRepo;
   private final AppointmentRepository appointmentRepo;
   private final PatientRepository patientRepo;
+  private final ResourceVersions versions;
+  private final ResponseCache responses;
+  private final DuplicatePatientDetector duplicates;
+  private final PatientSummaries summaries;
 
   public AdminController(UserService userService, DoctorRepository doctorRepo, 
                         UserRepository userRepo, VisitRepository visitRepo,
-                        AppointmentRepository appointmentRepo, PatientRepository patientRepo) {
+                        AppointmentRepository appointmentRepo, PatientRepository patientRepo,
+                        ResourceVersions versions, ResponseCache responses, DuplicatePatientDetector duplicates,
+                        PatientSummaries summaries) {
     this.userService = userService; 
     this.doctorRepo = doctorRepo; 
     this.userRepo = userRepo;
     this.visitRepo = visitRepo;
     this.appointmentRepo = appointmentRepo;
     this.patientRepo = patientRepo;
+    this.versions = versions;
+    this.responses = responses;
+    this.duplicates = duplicates;
+    this.summaries = summaries;
   }
 
   // Doctor Management
@@ -51,8 +67,9 @@ public class AdminController {
   }
 
   @GetMapping("/doctors")
-  public List<Doctor> listDoctors() { 
-    return doctorRepo.findAll(); 
+  public ResponseEntity<?> listDoctors(WebRequest request) {
+    return ConditionalGet.cached(request, responses, ResourceVersions.DOCTORS, ResourceVersions.DOCTORS,
+        versions.etag(ResourceVersions.DOCTORS), doctorRepo::findAll);
   }
 
   @GetMapping("/doctors/{id}")
@@ -75,13 +92,14 @@ public class AdminController {
     }).orElse(ResponseEntity.notFound().build());
   }
 
+  // Soft delete, see SoftDeletePurger
   @DeleteMapping("/doctors/{id}")
   public ResponseEntity<?> deleteDoctor(@PathVariable Long id) {
-    if (doctorRepo.existsById(id)) {
-      doctorRepo.deleteById(id);
+    return doctorRepo.findById(id).map(doctor -> {
+      doctor.setDeletedAt(Instant.now());
+      doctorRepo.save(doctor);
       return ResponseEntity.ok().build();
-    }
-    return ResponseEntity.notFound().build();
+    }).orElse(ResponseEntity.notFound().build());
   }
 
   // Receptionist Management
@@ -139,6 +157,18 @@ public class AdminController {
     );
   }
 
+  // Recomputes duplicate-detection keys, e.g. after patients were changed directly in the database
+  @PostMapping("/patients/duplicate-index/rebuild")
+  public Map<String, Object> rebuildDuplicateIndex() {
+    return Map.of("indexedPatients", duplicates.rebuild());
+  }
+
+  // Recomputes visit counts, last visits and next appointments of every patient
+  @PostMapping("/patients/summary/rebuild")
+  public Map<String, Object> rebuildPatientSummaries() {
+    return Map.of("summarisedPatients", summaries.rebuild());
+  }
+
   // User Management (All users)
   @GetMapping("/users")
   public List<User> getAllUsers() {
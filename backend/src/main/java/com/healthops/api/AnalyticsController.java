@@ -0,0 +1,62 @@
+package com.healthops.api;
+
+import com.healthops.analytics.TermCount;
+import com.healthops.analytics.TermCounts;
+import com.healthops.analytics.TermField;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/analytics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AnalyticsController {
+  static final int MAX_TOP = 100;
+
+  private final TermCounts termCounts;
+
+  public AnalyticsController(TermCounts termCounts) {
+    this.termCounts = termCounts;
+  }
+
+  // Ranges are inclusive days and default to the current month
+  @GetMapping("/terms/top")
+  public List<TermCount> topTerms(@RequestParam(defaultValue = "DIAGNOSIS") TermField field,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                  @RequestParam(required = false) Long doctorId,
+                                  @RequestParam(defaultValue = "10") int k) {
+    return termCounts.top(field, from(from), to(to), doctorId, limit(k));
+  }
+
+  @GetMapping("/terms/top-per-doctor")
+  public Map<Long, List<TermCount>> topTermsPerDoctor(@RequestParam(defaultValue = "DIAGNOSIS") TermField field,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                      @RequestParam(defaultValue = "10") int k) {
+    return termCounts.topPerDoctor(field, from(from), to(to), limit(k));
+  }
+
+  // Recounts from the visits still in the table; days of archived partitions would lose their counts
+  @PostMapping("/terms/rebuild")
+  public Map<String, Long> rebuildTerms(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    return Map.of("visits", termCounts.rebuild(from, to));
+  }
+
+  static LocalDate from(LocalDate from) {
+    return from != null ? from : LocalDate.now().withDayOfMonth(1);
+  }
+
+  static LocalDate to(LocalDate to) {
+    return to != null ? to : LocalDate.now();
+  }
+
+  static int limit(int k) {
+    return Math.max(1, Math.min(k, MAX_TOP));
+  }
+}
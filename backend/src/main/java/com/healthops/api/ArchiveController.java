@@ -0,0 +1,66 @@
+package com.healthops.api;
+
+import com.healthops.partition.PartitionService;
+import com.healthops.partition.PartitionService.ArchiveFile;
+import com.healthops.partition.PartitionedTable;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/archives")
+@PreAuthorize("hasRole('ADMIN')")
+public class ArchiveController {
+  private final PartitionService partitions;
+
+  public ArchiveController(PartitionService partitions) {
+    this.partitions = partitions;
+  }
+
+  @GetMapping
+  public List<Map<String, Object>> listArchives() {
+    return partitions.listArchives().stream().map(this::describe).toList();
+  }
+
+  @PostMapping("/run")
+  public List<Map<String, Object>> archiveExpired() {
+    return partitions.archiveExpired().stream().map(this::describe).toList();
+  }
+
+  // Gzipped CSV with a header row, readable with any CSV tool after decompression
+  @GetMapping("/{table}/{month}")
+  public ResponseEntity<Resource> downloadArchive(@PathVariable String table, @PathVariable YearMonth month) {
+    return PartitionedTable.byTableName(table)
+        .flatMap(t -> partitions.findArchive(t, month))
+        .map(path -> ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + path.getFileName())
+            .contentType(MediaType.parseMediaType("application/gzip"))
+            .<Resource>body(new FileSystemResource(path)))
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  @PostMapping("/{table}/{month}/restore")
+  public ResponseEntity<?> restoreArchive(@PathVariable String table, @PathVariable YearMonth month) {
+    var t = PartitionedTable.byTableName(table).orElse(null);
+    if (t == null || partitions.findArchive(t, month).isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(Map.of("restoredRows", partitions.restore(t, month)));
+  }
+
+  private Map<String, Object> describe(ArchiveFile a) {
+    return Map.of(
+        "table", a.table(),
+        "month", a.month().toString(),
+        "file", a.path().getFileName().toString(),
+        "sizeBytes", a.sizeBytes());
+  }
+}
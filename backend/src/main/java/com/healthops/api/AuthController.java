@@ -2,6 +2,7 @@ package com.healthops.api;
 
 import com.healthops.api.dto.AuthDtos.*;
 import com.healthops.security.JwtService;
+import com.healthops.tenant.TenantContext;
 import com.healthops.user.Role;
 import com.healthops.user.User;
 import com.healthops.user.UserRepository;
@@ -37,8 +38,9 @@ public class AuthController {
     }
     User u = userRepo.findByEmail(req.email()).orElseThrow();
     String role = u.getRoles().stream().findFirst().map(r -> r.getName()).orElse("UNKNOWN");
-    String token = jwt.generate(u.getEmail(), Map.of("role", role, "name", u.getFullName()));
-    return ResponseEntity.ok(new LoginResponse(token, role, u.getFullName()));
+    String clinic = TenantContext.current();
+    String token = jwt.generate(u.getEmail(), Map.of("role", role, "name", u.getFullName(), JwtService.CLINIC_CLAIM, clinic));
+    return ResponseEntity.ok(new LoginResponse(token, role, u.getFullName(), clinic));
   }
 
   @PostMapping("/register")
@@ -0,0 +1,82 @@
+package com.healthops.api;
+
+import com.healthops.cache.ResponseCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Comparator;
+import java.util.function.Supplier;
+
+// Answers If-None-Match from a precomputed ETag before the body is loaded
+final class ConditionalGet {
+  private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+  private ConditionalGet() {}
+
+  static <T> ResponseEntity<T> ifNoneMatch(WebRequest request, String etag, Supplier<T> body) {
+    if (request.checkNotModified(etag)) {
+      // checkNotModified has already written the ETag header
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+    }
+    return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body.get());
+  }
+
+  // Same, but the body comes from the response cache entry for key, gzipped if the client
+  // takes that. Clients preferring another format than JSON are served as before; a null
+  // body is answered with 404.
+  static ResponseEntity<?> cached(WebRequest request, ResponseCache cache, String key, String versionKey,
+                                  String etag, Supplier<?> body) {
+    if (!prefersJson(request.getHeader(HttpHeaders.ACCEPT))) {
+      return ifNoneMatch(request, etag, () -> body.get());
+    }
+    if (request.checkNotModified(etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+    }
+    ResponseCache.Entry entry = cache.get(key, versionKey, etag, body);
+    if (entry == null) {
+      return ResponseEntity.notFound().build();
+    }
+    boolean gzip = entry.gzipped() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    var ok = ResponseEntity.ok()
+        .eTag(etag)
+        .cacheControl(REVALIDATE)
+        .contentType(MediaType.APPLICATION_JSON)
+        .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      ok.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return ok.body(gzip ? entry.gzipped() : entry.json());
+  }
+
+  private static boolean prefersJson(String accept) {
+    if (accept == null || accept.isBlank()) {
+      return true;
+    }
+    try {
+      return MediaType.parseMediaTypes(accept).stream()
+          .max(Comparator.comparingDouble(MediaType::getQualityValue))
+          .map(type -> type.isCompatibleWith(MediaType.APPLICATION_JSON))
+          .orElse(true);
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+}
@@ -1,25 +1,39 @@
 package com.healthops.api;
 
+import com.healthops.analytics.TermCount;
+import com.healthops.analytics.TermCounts;
+import com.healthops.analytics.TermField;
 import com.healthops.api.dto.DoctorDtos.AvailabilityRequest;
 import com.healthops.api.dto.DoctorDtos.HolidayRequest;
 import com.healthops.api.dto.VisitDtos.CreateVisitRequest;
 import com.healthops.api.dto.VisitDtos.UpdateVisitRequest;
+import com.healthops.cache.ResourceVersions;
+import com.healthops.cache.ResponseCache;
 import com.healthops.doctor.*;
+import com.healthops.fields.FieldProjector;
+import com.healthops.patient.DuplicatePatientDetector;
 import com.healthops.patient.Patient;
 import com.healthops.patient.PatientRepository;
 import com.healthops.visit.Visit;
+import com.healthops.visit.VisitRecorder;
 import com.healthops.visit.VisitRepository;
+import com.healthops.visit.VisitSearch;
+import com.healthops.visit.VisitSummary;
 import com.healthops.appointment.AppointmentRepository;
 import com.healthops.user.User;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.charset.StandardCharsets;
-import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -34,35 +48,62 @@ public class DoctorController {
   private final PatientRepository patientRepo;
   private final VisitRepository visitRepo;
   private final AppointmentRepository appointmentRepo;
+  private final ResourceVersions versions;
+  private final ResponseCache responses;
+  private final DuplicatePatientDetector duplicates;
+  private final VisitRecorder visitRecorder;
+  private final FieldProjector projector;
+  private final ListStreamer streamer;
+  private final TermCounts termCounts;
+  private final VisitSearch visitSearch;
+
+  private static final Sort VISITS_NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "visitAt");
 
   public DoctorController(DoctorRepository doctorRepo, AvailabilityRepository availRepo, 
                          HolidayRepository holidayRepo, PatientRepository patientRepo, 
-                         VisitRepository visitRepo, AppointmentRepository appointmentRepo) {
+                         VisitRepository visitRepo, AppointmentRepository appointmentRepo,
+                         ResourceVersions versions, ResponseCache responses, DuplicatePatientDetector duplicates,
+                         VisitRecorder visitRecorder, FieldProjector projector, ListStreamer streamer,
+                         TermCounts termCounts, VisitSearch visitSearch) {
     this.doctorRepo = doctorRepo; 
     this.availRepo = availRepo; 
     this.holidayRepo = holidayRepo; 
     this.patientRepo = patientRepo; 
     this.visitRepo = visitRepo;
     this.appointmentRepo = appointmentRepo;
+    this.versions = versions;
+    this.responses = responses;
+    this.duplicates = duplicates;
+    this.visitRecorder = visitRecorder;
+    this.projector = projector;
+    this.streamer = streamer;
+    this.termCounts = termCounts;
+    this.visitSearch = visitSearch;
   }
 
-  // Get current doctor's information
+  // Get current doctor's information; any doctor or user change moves the doctors version
   @GetMapping("/profile")
-  public ResponseEntity<Doctor> getCurrentDoctor(Authentication auth) {
+  public ResponseEntity<?> getCurrentDoctor(Authentication auth, WebRequest request) {
     String email = auth.getName();
-    return doctorRepo.findByUserEmail(email)
-        .map(ResponseEntity::ok)
-        .orElse(ResponseEntity.notFound().build());
+    return ConditionalGet.cached(request, responses, "profile:" + email, ResourceVersions.DOCTORS,
+        versions.etag(ResourceVersions.DOCTORS), () -> doctorRepo.findByUserEmail(email).orElse(null));
   }
 
   // Patient Management
+  // List and detail endpoints accept fields=, e.g. fields=id,visitAt,patient.fullName
   @GetMapping("/patients")
-  public List<Patient> listPatients() { 
-    return patientRepo.findAll(); 
+  public ResponseEntity<?> listPatients(@RequestParam(required = false) String fields, WebRequest request) {
+    if (fields != null) {
+      return SparseFields.list(projector, Patient.class, fields, request, versions.etag(ResourceVersions.PATIENTS));
+    }
+    return ConditionalGet.ifNoneMatch(request, versions.etag(ResourceVersions.PATIENTS), patientRepo::findAll);
   }
 
   @GetMapping("/patients/{id}")
-  public ResponseEntity<Patient> getPatient(@PathVariable Long id) {
+  public ResponseEntity<?> getPatient(@PathVariable Long id, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.one(projector, Patient.class, fields, id);
+    }
     return patientRepo.findById(id)
         .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
@@ -75,46 +116,72 @@ public class DoctorController {
       p.setDob(updated.getDob());
       p.setPhone(updated.getPhone());
       p.setAddress(updated.getAddress());
-      return ResponseEntity.ok(patientRepo.save(p));
+      return ResponseEntity.ok(duplicates.save(p));
     }).orElse(ResponseEntity.notFound().build());
   }
 
   // Visit Management
   @PostMapping("/visits")
-  public Visit createVisit(@RequestBody CreateVisitRequest req, Authentication auth) {
-    var patient = patientRepo.findById(req.patientId()).orElseThrow();
-    var appointment = req.appointmentId() != null ? 
-        appointmentRepo.findById(req.appointmentId()).orElse(null) : null;
-    
-    // Get current doctor
-    var doctor = doctorRepo.findByUserEmail(auth.getName()).orElseThrow();
-    
-    var visit = Visit.builder()
-        .patient(patient)
-        .doctor(doctor)
-        .appointment(appointment)
-        .visitAt(Instant.now())
-        .notes(req.notes())
-        .diagnosis(req.diagnosis())
-        .prescription(req.prescription())
-        .build();
-    
-    return visitRepo.save(visit);
+  public ResponseEntity<Visit> createVisit(@RequestBody CreateVisitRequest req, Authentication auth) {
+    // One statement that also marks the linked appointment COMPLETED; empty if the caller has no doctor profile
+    return ForeignKeys.createOrNotFound(() -> visitRecorder.record(auth.getName(), req.patientId(), req.appointmentId(),
+        req.notes(), req.diagnosis(), req.prescription()).orElse(null));
   }
 
+  // Streamed, in JSON, CBOR or Smile per the Accept header
   @GetMapping("/visits")
-  public List<Visit> getAllVisits(Authentication auth) {
-    var doctor = doctorRepo.findByUserEmail(auth.getName()).orElseThrow();
-    return visitRepo.findByDoctorIdOrderByVisitAtDesc(doctor.getId());
+  public ResponseEntity<StreamingResponseBody> getAllVisits(
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept, Authentication auth) {
+    var doctorId = doctorRepo.findIdByUserEmail(auth.getName()).orElseThrow();
+    return streamer.stream(accept, () -> visitRepo.streamByDoctorId(doctorId));
+  }
+
+  @GetMapping(value = "/visits", params = "fields")
+  public ResponseEntity<?> getAllVisitFields(@RequestParam String fields, Authentication auth) {
+    var doctorId = doctorRepo.findIdByUserEmail(auth.getName()).orElseThrow();
+    return SparseFields.list(projector, Visit.class, fields, Map.of("doctor.id", doctorId), VISITS_NEWEST_FIRST);
   }
 
   @GetMapping("/visits/patient/{patientId}")
-  public List<Visit> getPatientVisits(@PathVariable Long patientId) {
-    return visitRepo.findByPatientIdOrderByVisitAtDesc(patientId);
+  public ResponseEntity<?> getPatientVisits(@PathVariable Long patientId, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.list(projector, Visit.class, fields, Map.of("patient.id", patientId), VISITS_NEWEST_FIRST);
+    }
+    return ResponseEntity.ok(visitRepo.findByPatientIdOrderByVisitAtDesc(patientId));
+  }
+
+  // Summary lists leave out the text columns; fetch /visits/{id} for the full record
+  @GetMapping("/visits/summary")
+  public List<VisitSummary> getAllVisitSummaries(Authentication auth) {
+    var doctor = doctorRepo.findByUserEmail(auth.getName()).orElseThrow();
+    return visitRepo.findSummariesByDoctorId(doctor.getId());
+  }
+
+  @GetMapping("/visits/patient/{patientId}/summary")
+  public List<VisitSummary> getPatientVisitSummaries(@PathVariable Long patientId) {
+    return visitRepo.findSummariesByPatientId(patientId);
+  }
+
+  // Ranked search of the signed-in doctor's visits, or of one patient's with patientId
+  @GetMapping("/visits/search")
+  public ResponseEntity<?> searchVisits(@RequestParam String q, @RequestParam(required = false) Long patientId,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int size, Authentication auth) {
+    if (q.isBlank()) {
+      return ResponseEntity.badRequest().body(Map.of("message", "q must not be blank"));
+    }
+    Long doctorId = patientId != null ? null : doctorRepo.findIdByUserEmail(auth.getName()).orElse(null);
+    if (patientId == null && doctorId == null) {
+      return ResponseEntity.badRequest().body(Map.of("message", "patientId is required"));
+    }
+    return ResponseEntity.ok(visitSearch.search(q, doctorId, patientId, Math.max(0, page), Math.max(1, Math.min(size, 100))));
   }
 
   @GetMapping("/visits/{id}")
-  public ResponseEntity<Visit> getVisit(@PathVariable Long id) {
+  public ResponseEntity<?> getVisit(@PathVariable Long id, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.one(projector, Visit.class, fields, id);
+    }
     return visitRepo.findById(id)
         .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
@@ -122,34 +189,38 @@ public class DoctorController {
 
   @PutMapping("/visits/{id}")
   public ResponseEntity<Visit> updateVisit(@PathVariable Long id, @RequestBody UpdateVisitRequest req) {
-    return visitRepo.findById(id).map(visit -> {
-      visit.setNotes(req.notes());
-      visit.setDiagnosis(req.diagnosis());
-      visit.setPrescription(req.prescription());
-      return ResponseEntity.ok(visitRepo.save(visit));
-    }).orElse(ResponseEntity.notFound().build());
+    return ResponseEntity.of(visitRecorder.update(id, req.notes(), req.diagnosis(), req.prescription()));
   }
 
   @DeleteMapping("/visits/{id}")
   public ResponseEntity<?> deleteVisit(@PathVariable Long id) {
-    if (visitRepo.existsById(id)) {
-      visitRepo.deleteById(id);
-      return ResponseEntity.ok().build();
-    }
-    return ResponseEntity.notFound().build();
+    return visitRecorder.delete(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+  }
+
+  // The signed-in doctor's most frequent diagnosis or prescription terms, by default this month
+  @GetMapping("/analytics/top-terms")
+  public List<TermCount> getTopTerms(@RequestParam(defaultValue = "DIAGNOSIS") TermField field,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(defaultValue = "10") int k, Authentication auth) {
+    var doctorId = doctorRepo.findIdByUserEmail(auth.getName()).orElseThrow();
+    return termCounts.top(field, AnalyticsController.from(from), AnalyticsController.to(to), doctorId,
+        AnalyticsController.limit(k));
   }
 
   // Availability Management
   @PostMapping("/availability")
-  public Availability addAvailability(@RequestBody AvailabilityRequest req, Authentication auth) {
-    var doctor = doctorRepo.findByUserEmail(auth.getName()).orElseThrow();
-    var a = Availability.builder()
-        .doctor(doctor)
-        .dayOfWeek(req.dayOfWeek())
-        .startTime(req.startTime())
-        .endTime(req.endTime())
-        .build();
-    return availRepo.save(a);
+  public ResponseEntity<Availability> addAvailability(@RequestBody AvailabilityRequest req, Authentication auth) {
+    // The lookup skips soft-deleted doctors, whose row would still satisfy the foreign key
+    return doctorRepo.findIdByUserEmail(auth.getName()).map(doctorId -> {
+      var a = Availability.builder()
+          .doctor(doctorRepo.getReferenceById(doctorId))
+          .dayOfWeek(req.dayOfWeek())
+          .startTime(req.startTime())
+          .endTime(req.endTime())
+          .build();
+      return ResponseEntity.ok(availRepo.save(a));
+    }).orElse(ResponseEntity.notFound().build());
   }
 
   @GetMapping("/availability")
@@ -179,14 +250,15 @@ public class DoctorController {
 
   // Holiday Management
   @PostMapping("/holidays")
-  public Holiday addHoliday(@RequestBody HolidayRequest req, Authentication auth) {
-    var doctor = doctorRepo.findByUserEmail(auth.getName()).orElseThrow();
-    var h = Holiday.builder()
-        .doctor(doctor)
-        .date(req.date())
-        .reason(req.reason())
-        .build();
-    return holidayRepo.save(h);
+  public ResponseEntity<Holiday> addHoliday(@RequestBody HolidayRequest req, Authentication auth) {
+    return doctorRepo.findIdByUserEmail(auth.getName()).map(doctorId -> {
+      var h = Holiday.builder()
+          .doctor(doctorRepo.getReferenceById(doctorId))
+          .date(req.date())
+          .reason(req.reason())
+          .build();
+      return ResponseEntity.ok(holidayRepo.save(h));
+    }).orElse(ResponseEntity.notFound().build());
   }
 
   @GetMapping("/holidays")
@@ -0,0 +1,48 @@
+package com.healthops.api;
+
+import com.healthops.export.ArrowExporter;
+import com.healthops.export.ExportTable;
+import com.healthops.tenant.TenantContext;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Full-fidelity columnar exports for analysis tools, e.g. pyarrow.ipc.open_stream(...).read_pandas()
+@RestController
+@RequestMapping("/api/admin/exports")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+  private final ArrowExporter exporter;
+
+  public ExportController(ArrowExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  @GetMapping("/{table}.arrows")
+  public ResponseEntity<StreamingResponseBody> export(@PathVariable String table,
+                                                      @RequestParam(defaultValue = "zstd") String compression) {
+    ExportTable exportTable;
+    CompressionUtil.CodecType codec;
+    try {
+      exportTable = ExportTable.valueOf(table.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.notFound().build();
+    }
+    try {
+      codec = ArrowExporter.codec(compression);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+    // The body is written on an async thread, which does not inherit the request's clinic
+    String tenant = TenantContext.current();
+    StreamingResponseBody body = out -> TenantContext.runAs(tenant, () -> exporter.export(exportTable, codec, out));
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(ArrowExporter.MEDIA_TYPE))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + exportTable.fileName())
+        .body(body);
+  }
+}
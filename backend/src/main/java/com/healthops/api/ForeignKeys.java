@@ -0,0 +1,29 @@
+package com.healthops.api;
+
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+// Creates link to other rows by id without loading them first; the database's
+// foreign keys check that those rows exist, and a violation becomes a 404
+final class ForeignKeys {
+  private static final String FOREIGN_KEY_VIOLATION = "23503";
+
+  private ForeignKeys() {}
+
+  // A null result is also answered with 404
+  static <T> ResponseEntity<T> createOrNotFound(Supplier<T> create) {
+    try {
+      return ResponseEntity.ofNullable(create.get());
+    } catch (DataIntegrityViolationException e) {
+      if (NestedExceptionUtils.getMostSpecificCause(e) instanceof SQLException sql
+          && FOREIGN_KEY_VIOLATION.equals(sql.getSQLState())) {
+        return ResponseEntity.notFound().build();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.healthops.api;
+
+import com.healthops.jobs.JobLeases;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/jobs")
+@PreAuthorize("hasRole('ADMIN')")
+public class JobController {
+  private final JobLeases leases;
+
+  public JobController(JobLeases leases) {
+    this.leases = leases;
+  }
+
+  // Which instance owns each background job of the clinic, and when it last ran it
+  @GetMapping
+  public Map<String, Object> jobs() {
+    return Map.of("node", leases.node(), "jobs", leases.status());
+  }
+}
@@ -0,0 +1,111 @@
+package com.healthops.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.healthops.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes large entity lists element by element as they are read from the
+ * database, in JSON, CBOR or Smile as chosen by the Accept header. Rows come
+ * from a cursor and the persistence context is cleared every batch, so memory
+ * stays flat however long the list is.
+ */
+@Component
+public class ListStreamer {
+  private static final int BATCH = 500;
+
+  private final List<AbstractJackson2HttpMessageConverter> converters;
+  private final TransactionTemplate readOnlyTx;
+  private final EntityManager em;
+
+  public ListStreamer(MappingJackson2HttpMessageConverter json, MappingJackson2CborHttpMessageConverter cbor,
+                      MappingJackson2SmileHttpMessageConverter smile, PlatformTransactionManager txManager,
+                      EntityManager em) {
+    this.converters = List.of(json, cbor, smile);
+    this.readOnlyTx = new TransactionTemplate(txManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.em = em;
+  }
+
+  /** Streams the rows of {@code source}, which is opened inside a read-only transaction. */
+  public <T> ResponseEntity<StreamingResponseBody> stream(String accept, Supplier<Stream<T>> source) {
+    Negotiated format = negotiate(accept);
+    if (format == null) {
+      return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+    }
+    ObjectWriter writer = format.converter().getObjectMapper().writer()
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    // The body is written on an async thread, which does not inherit the request's clinic
+    String tenant = TenantContext.current();
+    StreamingResponseBody body = out -> TenantContext.runAs(tenant, () ->
+        readOnlyTx.executeWithoutResult(status -> write(writer, out, source)));
+    return ResponseEntity.ok()
+        .contentType(format.mediaType())
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+        .body(body);
+  }
+
+  private <T> void write(ObjectWriter writer, OutputStream out, Supplier<Stream<T>> source) {
+    try (Stream<T> rows = source.get();
+         JsonGenerator gen = writer.createGenerator(out)) {
+      // The servlet container owns the response stream
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.writeStartArray();
+      int count = 0;
+      for (var it = rows.iterator(); it.hasNext(); ) {
+        writer.writeValue(gen, it.next());
+        if (++count % BATCH == 0) {
+          em.clear();
+        }
+      }
+      gen.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private record Negotiated(AbstractJackson2HttpMessageConverter converter, MediaType mediaType) {}
+
+  // Highest-quality acceptable type that one of the converters can write, JSON first on ties
+  private Negotiated negotiate(String accept) {
+    List<MediaType> accepted = new ArrayList<>(accept == null || accept.isBlank()
+        ? List.of(MediaType.ALL) : MediaType.parseMediaTypes(accept));
+    accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+    for (MediaType wanted : accepted) {
+      if (wanted.getQualityValue() == 0) {
+        continue;
+      }
+      for (AbstractJackson2HttpMessageConverter converter : converters) {
+        for (MediaType supported : converter.getSupportedMediaTypes()) {
+          if (supported.isConcrete() && wanted.isCompatibleWith(supported)) {
+            return new Negotiated(converter, supported);
+          }
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,99 @@
+package com.healthops.api;
+
+import com.healthops.profiling.ProfileSummary;
+import com.healthops.profiling.Profiler;
+import jdk.jfr.Recording;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Flight recordings open in JDK Mission Control or with `jfr print --events jdk.ObjectAllocationSample <file>`
+@RestController
+@RequestMapping("/api/admin/profiling")
+@PreAuthorize("hasRole('ADMIN')")
+public class ProfilingController {
+  private static final int MAX_TOP = 100;
+
+  private final Profiler profiler;
+
+  public ProfilingController(Profiler profiler) {
+    this.profiler = profiler;
+  }
+
+  // Records for the given time, then sends the file; the response starts once the recording has ended
+  @PostMapping("/recordings")
+  public Callable<ResponseEntity<?>> record(@RequestParam(defaultValue = "profile") String profile,
+                                            @RequestParam(defaultValue = "PT30S") Duration duration) {
+    Recording recording;
+    try {
+      recording = profiler.start(profile, duration);
+    } catch (IllegalArgumentException e) {
+      return () -> ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    } catch (IllegalStateException e) {
+      return () -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+    return () -> jfr("healthops-" + profile + ".jfr", profiler.finish(recording));
+  }
+
+  @PostMapping("/recordings/summary")
+  public Callable<ResponseEntity<?>> recordSummary(@RequestParam(defaultValue = "profile") String profile,
+                                                   @RequestParam(defaultValue = "PT30S") Duration duration,
+                                                   @RequestParam(defaultValue = "20") int top) {
+    Recording recording;
+    try {
+      recording = profiler.start(profile, duration);
+    } catch (IllegalArgumentException e) {
+      return () -> ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    } catch (IllegalStateException e) {
+      return () -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+    // Waits on an async thread, not a request thread
+    return () -> ResponseEntity.ok(summarize(profiler.finish(recording), top));
+  }
+
+  @GetMapping("/continuous.jfr")
+  public ResponseEntity<Resource> dumpContinuous() throws IOException {
+    if (!profiler.isContinuous()) {
+      return ResponseEntity.notFound().build();
+    }
+    return jfr("healthops-continuous.jfr", profiler.dumpContinuous());
+  }
+
+  @GetMapping("/continuous/summary")
+  public ResponseEntity<ProfileSummary> continuousSummary(@RequestParam(defaultValue = "20") int top) throws IOException {
+    if (!profiler.isContinuous()) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(summarize(profiler.dumpContinuous(), top));
+  }
+
+  private ProfileSummary summarize(Path file, int top) throws IOException {
+    try {
+      return profiler.summarize(file, Math.max(1, Math.min(top, MAX_TOP)));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // The temporary file goes away once it has been sent
+  private static ResponseEntity<Resource> jfr(String fileName, Path file) throws IOException {
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+        .contentLength(Files.size(file))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+        .body(new InputStreamResource(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE)));
+  }
+}
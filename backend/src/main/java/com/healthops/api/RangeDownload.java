@@ -0,0 +1,93 @@
+package com.healthops.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Streams a file with single byte-range support so interrupted downloads can resume.
+// On Tomcat the copy is handed to its sendfile path (FileChannel.transferTo straight
+// into the socket); elsewhere transferTo writes through the servlet output stream.
+final class RangeDownload {
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+  private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private RangeDownload() {}
+
+  static void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                   String etag, String fileName, String contentType) throws IOException {
+    long size = Files.size(file);
+    long start = 0;
+    long end = size - 1;
+    boolean partial = false;
+
+    String range = request.getHeader(HttpHeaders.RANGE);
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    // Multiple ranges and other units are not supported; those requests get the whole file
+    if (range != null && (ifRange == null || ifRange.equals(etag))) {
+      Matcher m = RANGE.matcher(range.trim());
+      if (m.matches() && !(m.group(1).isEmpty() && m.group(2).isEmpty())) {
+        if (m.group(1).isEmpty()) {
+          start = Math.max(0, size - Long.parseLong(m.group(2)));
+        } else {
+          start = Long.parseLong(m.group(1));
+          if (!m.group(2).isEmpty()) {
+            end = Math.min(end, Long.parseLong(m.group(2)));
+          }
+        }
+        if (start >= size || start > end) {
+          response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+          return;
+        }
+        partial = true;
+      }
+    }
+
+    long length = end - start + 1;
+    response.setStatus(partial ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "private");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+        ContentDisposition.attachment().filename(fileName).build().toString());
+    response.setContentType(contentType);
+    response.setContentLengthLong(length);
+    if (partial) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+      request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, end + 1);
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      long remaining = length;
+      while (remaining > 0) {
+        long sent = channel.transferTo(position, remaining, out);
+        if (sent <= 0) {
+          break;
+        }
+        position += sent;
+        remaining -= sent;
+      }
+    }
+  }
+}
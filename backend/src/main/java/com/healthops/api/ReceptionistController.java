@@ -4,26 +4,45 @@ import com.healthops.api.dto.AppointmentDtos.*;
 import com.healthops.api.dto.PatientDtos.*;
 import com.healthops.api.dto.DoctorDtos.*;
 import com.healthops.appointment.Appointment;
+import com.healthops.cache.ResourceVersions;
+import com.healthops.cache.ResponseCache;
 import com.healthops.appointment.AppointmentRepository;
+import com.healthops.appointment.AppointmentSummary;
 import com.healthops.doctor.Doctor;
 import com.healthops.doctor.DoctorRepository;
 import com.healthops.doctor.Availability;
 import com.healthops.doctor.AvailabilityRepository;
 import com.healthops.doctor.Holiday;
 import com.healthops.doctor.HolidayRepository;
+import com.healthops.fields.FieldProjector;
+import com.healthops.patient.DuplicatePatientDetector;
 import com.healthops.patient.Patient;
+import com.healthops.patient.PatientCodeAllocator;
+import com.healthops.patient.PatientSummaries;
+import com.healthops.patient.PatientSummary;
 import com.healthops.patient.PatientRepository;
+import com.healthops.report.ReportJobService;
+import com.healthops.report.ReportType;
+import com.healthops.visit.Visit;
 import com.healthops.visit.VisitRepository;
+import com.healthops.visit.VisitSummary;
 import com.healthops.user.Role;
 import com.healthops.user.UserService;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -40,11 +59,27 @@ public class ReceptionistController {
   private final VisitRepository visitRepo;
   private final AvailabilityRepository availRepo;
   private final HolidayRepository holidayRepo;
+  private final ResourceVersions versions;
+  private final ResponseCache responses;
+  private final DuplicatePatientDetector duplicates;
+  private final FieldProjector projector;
+  private final ListStreamer streamer;
+  private final PatientCodeAllocator codes;
+  private final PatientSummaries summaries;
+  private final ReportJobService reports;
+
+  // A hand-picked code in the generated format would later collide with the allocator
+  private static final String RESERVED_CODE = "code has the format of generated codes; leave it empty to get one";
+
+  private static final Sort VISITS_NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "visitAt");
 
   public ReceptionistController(PatientRepository patientRepo, AppointmentRepository apptRepo, 
                                DoctorRepository doctorRepo, UserService userService,
                                VisitRepository visitRepo, AvailabilityRepository availRepo,
-                               HolidayRepository holidayRepo) {
+                               HolidayRepository holidayRepo, ResourceVersions versions,
+                               ResponseCache responses, DuplicatePatientDetector duplicates, FieldProjector projector,
+                               ListStreamer streamer, PatientCodeAllocator codes,
+                               PatientSummaries summaries, ReportJobService reports) {
     this.patientRepo = patientRepo; 
     this.apptRepo = apptRepo; 
     this.doctorRepo = doctorRepo; 
@@ -52,28 +87,101 @@ public class ReceptionistController {
     this.visitRepo = visitRepo;
     this.availRepo = availRepo;
     this.holidayRepo = holidayRepo;
+    this.versions = versions;
+    this.responses = responses;
+    this.duplicates = duplicates;
+    this.projector = projector;
+    this.streamer = streamer;
+    this.codes = codes;
+    this.summaries = summaries;
+    this.reports = reports;
   }
 
   // Enhanced Patient Management
+  // Likely duplicates are returned with 409 unless the caller confirms with force=true
   @PostMapping("/patients")
-  public Patient createPatient(@RequestBody CreatePatientRequest req) {
-    var p = Patient.builder()
-        .code(req.code())
-        .fullName(req.fullName())
-        .dob(req.dob())
-        .phone(req.phone())
-        .address(req.address())
-        .build();
-    return patientRepo.save(p);
+  public ResponseEntity<?> createPatient(@RequestBody CreatePatientRequest req,
+                                         @RequestParam(defaultValue = "false") boolean force) {
+    if (codes.isReserved(req.code())) {
+      return ResponseEntity.badRequest().body(Map.of("message", RESERVED_CODE));
+    }
+    if (!force) {
+      var matches = duplicates.findMatches(req.fullName(), req.dob(), req.phone(), null);
+      if (!matches.isEmpty()) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(new DuplicatePatientResponse("Possible duplicate patient", matches));
+      }
+    }
+    return ResponseEntity.ok(duplicates.save(toPatient(req)));
+  }
+
+  @PostMapping("/patients/import")
+  public ImportResult importPatients(@RequestBody List<CreatePatientRequest> rows,
+                                     @RequestParam(defaultValue = "false") boolean force) {
+    int created = 0;
+    List<ImportRejection> rejected = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      var req = rows.get(i);
+      if (req.fullName() == null || req.fullName().isBlank()) {
+        rejected.add(new ImportRejection(i, req.code(), "fullName is required", List.of()));
+        continue;
+      }
+      if (codes.isReserved(req.code())) {
+        rejected.add(new ImportRejection(i, req.code(), RESERVED_CODE, List.of()));
+        continue;
+      }
+      if (!isBlank(req.code()) && patientRepo.findByCode(req.code()).isPresent()) {
+        rejected.add(new ImportRejection(i, req.code(), "code already exists", List.of()));
+        continue;
+      }
+      // Earlier rows are already indexed, so duplicates within the file are caught too
+      if (!force) {
+        var matches = duplicates.findMatches(req.fullName(), req.dob(), req.phone(), null);
+        if (!matches.isEmpty()) {
+          rejected.add(new ImportRejection(i, req.code(), "possible duplicate", matches));
+          continue;
+        }
+      }
+      duplicates.save(toPatient(req));
+      created++;
+    }
+    return new ImportResult(created, rejected);
+  }
+
+  // Patients with visit count, last visit and next appointment, read from patient_summary
+  @GetMapping("/patients/summaries")
+  public List<PatientSummary> listPatientSummaries(@RequestParam(required = false) String query) {
+    return summaries.list(query);
+  }
+
+  @GetMapping("/patients/{id}/summary")
+  public ResponseEntity<PatientSummary> getPatientSummary(@PathVariable Long id) {
+    return summaries.find(id)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
   }
 
+  @GetMapping("/patients/{id}/duplicates")
+  public ResponseEntity<?> findDuplicates(@PathVariable Long id) {
+    return patientRepo.findById(id)
+        .map(p -> ResponseEntity.ok(duplicates.findMatches(p.getFullName(), p.getDob(), p.getPhone(), p.getId())))
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  // List and detail endpoints accept fields=, e.g. fields=id,code,fullName for pickers
   @GetMapping("/patients")
-  public List<Patient> listPatients() { 
-    return patientRepo.findAll(); 
+  public ResponseEntity<?> listPatients(@RequestParam(required = false) String fields, WebRequest request) {
+    if (fields != null) {
+      return SparseFields.list(projector, Patient.class, fields, request, versions.etag(ResourceVersions.PATIENTS));
+    }
+    return ConditionalGet.ifNoneMatch(request, versions.etag(ResourceVersions.PATIENTS), patientRepo::findAll);
   }
 
   @GetMapping("/patients/{id}")
-  public ResponseEntity<Patient> getPatient(@PathVariable Long id) {
+  public ResponseEntity<?> getPatient(@PathVariable Long id, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.one(projector, Patient.class, fields, id);
+    }
     return patientRepo.findById(id)
         .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
@@ -86,17 +194,19 @@ public class ReceptionistController {
       p.setDob(req.dob()); 
       p.setPhone(req.phone()); 
       p.setAddress(req.address());
-      return ResponseEntity.ok(patientRepo.save(p));
+      return ResponseEntity.ok(duplicates.save(p));
     }).orElse(ResponseEntity.notFound().build());
   }
 
+  // Soft delete: the patient and their appointments and visits are hidden at once
+  // and removed by SoftDeletePurger outside peak hours
   @DeleteMapping("/patients/{id}")
-  public ResponseEntity<?> deletePatient(@PathVariable Long id) { 
-    if (patientRepo.existsById(id)) {
-      patientRepo.deleteById(id);
+  public ResponseEntity<?> deletePatient(@PathVariable Long id) {
+    return patientRepo.findById(id).map(patient -> {
+      patient.setDeletedAt(Instant.now());
+      patientRepo.save(patient);
       return ResponseEntity.ok().build();
-    }
-    return ResponseEntity.notFound().build();
+    }).orElse(ResponseEntity.notFound().build());
   }
 
   // Enhanced Doctor Management
@@ -112,8 +222,9 @@ public class ReceptionistController {
   }
 
   @GetMapping("/doctors")
-  public List<Doctor> listDoctors() {
-    return doctorRepo.findAll();
+  public ResponseEntity<?> listDoctors(WebRequest request) {
+    return ConditionalGet.cached(request, responses, ResourceVersions.DOCTORS, ResourceVersions.DOCTORS,
+        versions.etag(ResourceVersions.DOCTORS), doctorRepo::findAll);
   }
 
   @GetMapping("/doctors/{id}")
@@ -123,31 +234,37 @@ public class ReceptionistController {
         .orElse(ResponseEntity.notFound().build());
   }
 
+  // Soft delete, see SoftDeletePurger
   @DeleteMapping("/doctors/{id}")
-  public ResponseEntity<?> deleteDoctor(@PathVariable Long id) { 
-    if (doctorRepo.existsById(id)) {
-      doctorRepo.deleteById(id);
+  public ResponseEntity<?> deleteDoctor(@PathVariable Long id) {
+    return doctorRepo.findById(id).map(doctor -> {
+      doctor.setDeletedAt(Instant.now());
+      doctorRepo.save(doctor);
       return ResponseEntity.ok().build();
-    }
-    return ResponseEntity.notFound().build();
+    }).orElse(ResponseEntity.notFound().build());
   }
 
   // Doctor Availability Management (for receptionists to manage)
   @PostMapping("/doctors/{doctorId}/availability")
-  public Availability addDoctorAvailability(@PathVariable Long doctorId, @RequestBody AvailabilityRequest req) {
-    var doctor = doctorRepo.findById(doctorId).orElseThrow();
+  public ResponseEntity<Availability> addDoctorAvailability(@PathVariable Long doctorId, @RequestBody AvailabilityRequest req) {
+    // The foreign key is also satisfied by a soft-deleted doctor
+    if (!doctorRepo.existsById(doctorId)) {
+      return ResponseEntity.notFound().build();
+    }
     var availability = Availability.builder()
-        .doctor(doctor)
+        .doctor(doctorRepo.getReferenceById(doctorId))
         .dayOfWeek(req.dayOfWeek())
         .startTime(req.startTime())
         .endTime(req.endTime())
         .build();
-    return availRepo.save(availability);
+    return ForeignKeys.createOrNotFound(() -> availRepo.save(availability));
   }
 
   @GetMapping("/doctors/{doctorId}/availability")
-  public List<Availability> getDoctorAvailability(@PathVariable Long doctorId) {
-    return availRepo.findByDoctorId(doctorId);
+  public ResponseEntity<?> getDoctorAvailability(@PathVariable Long doctorId, WebRequest request) {
+    String key = ResourceVersions.availability(doctorId);
+    return ConditionalGet.cached(request, responses, key, key, versions.etag(key),
+        () -> availRepo.findByDoctorId(doctorId));
   }
 
   @PutMapping("/availability/{id}")
@@ -171,19 +288,23 @@ public class ReceptionistController {
 
   // Doctor Holiday Management (for receptionists to manage)
   @PostMapping("/doctors/{doctorId}/holidays")
-  public Holiday addDoctorHoliday(@PathVariable Long doctorId, @RequestBody HolidayRequest req) {
-    var doctor = doctorRepo.findById(doctorId).orElseThrow();
+  public ResponseEntity<Holiday> addDoctorHoliday(@PathVariable Long doctorId, @RequestBody HolidayRequest req) {
+    if (!doctorRepo.existsById(doctorId)) {
+      return ResponseEntity.notFound().build();
+    }
     var holiday = Holiday.builder()
-        .doctor(doctor)
+        .doctor(doctorRepo.getReferenceById(doctorId))
         .date(req.date())
         .reason(req.reason())
         .build();
-    return holidayRepo.save(holiday);
+    return ForeignKeys.createOrNotFound(() -> holidayRepo.save(holiday));
   }
 
   @GetMapping("/doctors/{doctorId}/holidays")
-  public List<Holiday> getDoctorHolidays(@PathVariable Long doctorId) {
-    return holidayRepo.findByDoctorId(doctorId);
+  public ResponseEntity<?> getDoctorHolidays(@PathVariable Long doctorId, WebRequest request) {
+    String key = ResourceVersions.holidays(doctorId);
+    return ConditionalGet.cached(request, responses, key, key, versions.etag(key),
+        () -> holidayRepo.findByDoctorId(doctorId));
   }
 
   @PutMapping("/holidays/{id}")
@@ -206,26 +327,43 @@ public class ReceptionistController {
 
   // Enhanced Appointment Management
   @PostMapping("/appointments")
-  public Appointment createAppointment(@RequestBody CreateAppointmentRequest req) {
-    var p = patientRepo.findById(req.patientId()).orElseThrow();
-    var d = doctorRepo.findById(req.doctorId()).orElseThrow();
+  public ResponseEntity<Appointment> createAppointment(@RequestBody CreateAppointmentRequest req) {
+    // The foreign keys are also satisfied by a soft-deleted patient or doctor
+    if (!patientRepo.existsById(req.patientId()) || !doctorRepo.existsById(req.doctorId())) {
+      return ResponseEntity.notFound().build();
+    }
     var a = Appointment.builder()
-        .patient(p)
-        .doctor(d)
+        .patient(patientRepo.getReferenceById(req.patientId()))
+        .doctor(doctorRepo.getReferenceById(req.doctorId()))
         .scheduledAt(req.scheduledAt())
         .status("SCHEDULED")
         .reason(req.reason())
         .build();
-    return apptRepo.save(a);
+    return ForeignKeys.createOrNotFound(() -> apptRepo.save(a));
   }
 
+  // Full lists are streamed, in JSON, CBOR or Smile per the Accept header
   @GetMapping("/appointments")
-  public List<Appointment> listAppointments() { 
-    return apptRepo.findAll(); 
+  public ResponseEntity<StreamingResponseBody> listAppointments(
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    return streamer.stream(accept, apptRepo::streamAll);
+  }
+
+  @GetMapping(value = "/appointments", params = "fields")
+  public ResponseEntity<?> listAppointmentFields(@RequestParam String fields) {
+    return SparseFields.list(projector, Appointment.class, fields, Map.of(), Sort.unsorted());
+  }
+
+  @GetMapping("/appointments/summary")
+  public List<AppointmentSummary> listAppointmentSummaries() {
+    return apptRepo.findAllSummaries();
   }
 
   @GetMapping("/appointments/{id}")
-  public ResponseEntity<Appointment> getAppointment(@PathVariable Long id) {
+  public ResponseEntity<?> getAppointment(@PathVariable Long id, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.one(projector, Appointment.class, fields, id);
+    }
     return apptRepo.findById(id)
         .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
@@ -260,32 +398,53 @@ public class ReceptionistController {
 
   // Visit History
   @GetMapping("/patients/{patientId}/visits")
-  public List<com.healthops.visit.Visit> getPatientVisitHistory(@PathVariable Long patientId) {
-    return visitRepo.findByPatientIdOrderByVisitAtDesc(patientId);
+  public ResponseEntity<?> getPatientVisitHistory(@PathVariable Long patientId,
+                                                  @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.list(projector, Visit.class, fields, Map.of("patient.id", patientId), VISITS_NEWEST_FIRST);
+    }
+    return ResponseEntity.ok(visitRepo.findByPatientIdOrderByVisitAtDesc(patientId));
   }
 
   @GetMapping("/visits")
-  public List<com.healthops.visit.Visit> getAllVisits() {
-    return visitRepo.findAll();
+  public ResponseEntity<StreamingResponseBody> getAllVisits(
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    return streamer.stream(accept, visitRepo::streamAll);
+  }
+
+  @GetMapping(value = "/visits", params = "fields")
+  public ResponseEntity<?> getAllVisitFields(@RequestParam String fields) {
+    return SparseFields.list(projector, Visit.class, fields, Map.of(), Sort.unsorted());
+  }
+
+  // Summary lists leave out the text columns; fetch /visits/{id} for the full record
+  @GetMapping("/patients/{patientId}/visits/summary")
+  public List<VisitSummary> getPatientVisitSummaries(@PathVariable Long patientId) {
+    return visitRepo.findSummariesByPatientId(patientId);
+  }
+
+  @GetMapping("/visits/summary")
+  public List<VisitSummary> getAllVisitSummaries() {
+    return visitRepo.findAllSummaries();
+  }
+
+  @GetMapping("/visits/{id}")
+  public ResponseEntity<?> getVisit(@PathVariable Long id, @RequestParam(required = false) String fields) {
+    if (fields != null) {
+      return SparseFields.one(projector, Visit.class, fields, id);
+    }
+    return visitRepo.findById(id)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
   }
 
   // Enhanced Reports
   @GetMapping("/reports/patients.csv")
-  public ResponseEntity<byte[]> downloadPatientsReport() {
-    var patients = patientRepo.findAll();
-    
-    String header = "Patient Code,Full Name,Date of Birth,Phone,Address,Total Visits\n";
-    String body = patients.stream().map(p -> String.join(",",
-        safe(p.getCode()),
-        safe(p.getFullName()),
-        p.getDob() != null ? p.getDob().toString() : "",
-        safe(p.getPhone()),
-        safe(p.getAddress()),
-        String.valueOf(visitRepo.countByPatientId(p.getId()))
-    )).collect(Collectors.joining("\n"));
-    
-    String csv = header + body + "\n";
-    byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+  public ResponseEntity<byte[]> downloadPatientsReport() throws IOException {
+    // One query joining the summaries, rendered like the background report of the same type
+    StringWriter csv = new StringWriter();
+    reports.write(ReportType.PATIENTS, null, csv);
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
     
     return ResponseEntity.ok()
         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=patients-report.csv")
@@ -367,6 +526,21 @@ public class ReceptionistController {
   }
 
 
+  // Rows without a code get one from the allocator
+  private Patient toPatient(CreatePatientRequest req) {
+    return Patient.builder()
+        .code(isBlank(req.code()) ? codes.next() : req.code())
+        .fullName(req.fullName())
+        .dob(req.dob())
+        .phone(req.phone())
+        .address(req.address())
+        .build();
+  }
+
+  private static boolean isBlank(String s) {
+    return s == null || s.isBlank();
+  }
+
   private String safe(String s) { 
     return s == null ? "" : s.replaceAll("[\r\n,]", " "); 
   }
@@ -0,0 +1,117 @@
+package com.healthops.api;
+
+import com.healthops.api.dto.ReportDtos.CreateReportJobRequest;
+import com.healthops.doctor.DoctorRepository;
+import com.healthops.report.ReportJob;
+import com.healthops.report.ReportJobService;
+import com.healthops.report.ReportType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/reports/jobs")
+@PreAuthorize("hasAnyRole('ADMIN','DOCTOR','RECEPTIONIST')")
+public class ReportJobController {
+
+  private final ReportJobService reports;
+  private final DoctorRepository doctorRepo;
+
+  public ReportJobController(ReportJobService reports, DoctorRepository doctorRepo) {
+    this.reports = reports;
+    this.doctorRepo = doctorRepo;
+  }
+
+  // Doctors may only export their own visits and per-patient histories, as with the synchronous CSVs
+  @PostMapping
+  public ResponseEntity<?> submit(@RequestBody CreateReportJobRequest req, Authentication auth) {
+    ReportType type;
+    try {
+      type = ReportType.valueOf(req.type().toUpperCase());
+    } catch (IllegalArgumentException | NullPointerException e) {
+      return ResponseEntity.badRequest().body(Map.of("message", "Unknown report type: " + req.type()));
+    }
+    Long subjectId = req.subjectId();
+    if (hasRole(auth, "DOCTOR")) {
+      if (type == ReportType.APPOINTMENTS || type == ReportType.PATIENTS) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+      }
+      if (type == ReportType.DOCTOR_VISITS) {
+        subjectId = doctorRepo.findByUserEmail(auth.getName()).orElseThrow().getId();
+      }
+    }
+    if (type.requiresSubject() && subjectId == null) {
+      return ResponseEntity.badRequest().body(Map.of("message", "subjectId is required for " + type));
+    }
+    if (!type.requiresSubject()) {
+      subjectId = null;
+    }
+
+    try {
+      ReportJob job = reports.submit(type, subjectId, auth.getName());
+      return ResponseEntity.accepted().location(URI.create("/api/reports/jobs/" + job.getId())).body(job);
+    } catch (RejectedExecutionException e) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, "30")
+          .body(Map.of("message", "Too many reports queued, try again later"));
+    }
+  }
+
+  @GetMapping
+  public List<ReportJob> list(Authentication auth) {
+    return reports.listFor(hasRole(auth, "ADMIN") ? null : auth.getName());
+  }
+
+  @GetMapping("/{id}")
+  public ResponseEntity<ReportJob> get(@PathVariable String id, Authentication auth) {
+    return reports.find(id)
+        .filter(job -> canAccess(job, auth))
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
+
+  @GetMapping("/{id}/download")
+  public void download(@PathVariable String id, Authentication auth,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+    var job = reports.find(id).filter(j -> canAccess(j, auth)).orElse(null);
+    if (job == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    if (job.getStatus() != ReportJob.Status.COMPLETED) {
+      response.sendError(HttpServletResponse.SC_CONFLICT, "Report is " + job.getStatus());
+      return;
+    }
+    RangeDownload.send(request, response, job.getFile(), "\"" + job.getId() + "\"",
+        job.getFileName(), "text/csv;charset=UTF-8");
+  }
+
+  @DeleteMapping("/{id}")
+  public ResponseEntity<?> delete(@PathVariable String id, Authentication auth) {
+    var job = reports.find(id).filter(j -> canAccess(j, auth));
+    if (job.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    reports.remove(job.get());
+    return ResponseEntity.ok().build();
+  }
+
+  private boolean canAccess(ReportJob job, Authentication auth) {
+    return hasRole(auth, "ADMIN") || job.getOwner().equals(auth.getName());
+  }
+
+  private static boolean hasRole(Authentication auth, String role) {
+    return auth.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_" + role));
+  }
+}
@@ -0,0 +1,43 @@
+package com.healthops.api;
+
+import com.healthops.fields.FieldProjector;
+import com.healthops.fields.FieldSet;
+import com.healthops.fields.InvalidFieldsException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.function.Function;
+
+// Answers ?fields= requests with only the selected attributes; an invalid selection is a 400
+final class SparseFields {
+  private SparseFields() {}
+
+  static ResponseEntity<?> list(FieldProjector projector, Class<?> type, String fields,
+                                Map<String, ?> where, Sort sort) {
+    return respond(projector, type, fields, selection -> ResponseEntity.ok(projector.list(selection, where, sort)));
+  }
+
+  // Conditional variant for lists served with version ETags; each selection gets its own ETag
+  static ResponseEntity<?> list(FieldProjector projector, Class<?> type, String fields,
+                                WebRequest request, String etag) {
+    return respond(projector, type, fields, selection -> ConditionalGet.ifNoneMatch(request, selection.etag(etag),
+        () -> projector.list(selection, Map.of(), Sort.unsorted())));
+  }
+
+  static ResponseEntity<?> one(FieldProjector projector, Class<?> type, String fields, Object id) {
+    return respond(projector, type, fields, selection -> ResponseEntity.of(projector.findById(selection, id)));
+  }
+
+  private static ResponseEntity<?> respond(FieldProjector projector, Class<?> type, String fields,
+                                           Function<FieldSet, ResponseEntity<?>> handler) {
+    FieldSet selection;
+    try {
+      selection = projector.parse(type, fields);
+    } catch (InvalidFieldsException e) {
+      return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+    return handler.apply(selection);
+  }
+}
@@ -2,6 +2,6 @@ package com.healthops.api.dto;
 
 public class AuthDtos {
   public record LoginRequest(String email, String password) {}
-  public record LoginResponse(String token, String role, String fullName) {}
+  public record LoginResponse(String token, String role, String fullName, String clinic) {}
   public record RegisterRequest(String email, String fullName, String password, String role) {}
 }
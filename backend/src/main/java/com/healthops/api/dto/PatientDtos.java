@@ -1,8 +1,14 @@
 package com.healthops.api.dto;
 
+import com.healthops.patient.PatientMatch;
+
 import java.time.LocalDate;
+import java.util.List;
 
 public class PatientDtos {
   public record CreatePatientRequest(String code, String fullName, LocalDate dob, String phone, String address) {}
   public record UpdatePatientRequest(String fullName, LocalDate dob, String phone, String address) {}
+  public record DuplicatePatientResponse(String message, List<PatientMatch> matches) {}
+  public record ImportRejection(int row, String code, String reason, List<PatientMatch> matches) {}
+  public record ImportResult(int created, List<ImportRejection> rejected) {}
 }
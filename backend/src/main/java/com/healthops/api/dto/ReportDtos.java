@@ -0,0 +1,5 @@
+package com.healthops.api.dto;
+
+public class ReportDtos {
+  public record CreateReportJobRequest(String type, Long subjectId) {}
+}
@@ -2,13 +2,19 @@ package com.healthops.appointment;
 
 import com.healthops.doctor.Doctor;
 import com.healthops.patient.Patient;
+import com.healthops.patient.PatientSummaryListener;
+import com.healthops.reminder.AppointmentReminderListener;
 import com.healthops.user.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.Instant;
 
 @Entity @Table(name="appointments")
+@EntityListeners({AppointmentReminderListener.class, PatientSummaryListener.class})
+// Appointments of a deleted patient stay hidden until the purger removes them
+@SQLRestriction("NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = patient_id AND p.deleted_at IS NOT NULL)")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Appointment {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,7 +28,6 @@ public class Appointment {
 
   private Instant scheduledAt;
   private String status; // SCHEDULED, COMPLETED, CANCELLED
-  @Lob
   @Column(columnDefinition = "text")
   private String reason;
 
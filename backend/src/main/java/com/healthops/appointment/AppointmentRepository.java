@@ -1,30 +1,46 @@
 package com.healthops.appointment;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
     List<Appointment> findByDoctorId(Long doctorId);
     List<Appointment> findByPatientId(Long patientId);
 
+    @Query("SELECT new com.healthops.appointment.AppointmentSummary(a.id, a.scheduledAt, a.status, p.id, p.code, p.fullName, d.id, u.fullName) " +
+           "FROM Appointment a LEFT JOIN a.patient p LEFT JOIN a.doctor d LEFT JOIN d.user u " +
+           "ORDER BY a.scheduledAt DESC")
+    List<AppointmentSummary> findAllSummaries();
+
+    // Cursor over every appointment with its associations fetched in the same query
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Appointment a LEFT JOIN FETCH a.patient LEFT JOIN FETCH a.doctor d " +
+           "LEFT JOIN FETCH d.user LEFT JOIN FETCH a.createdBy")
+    Stream<Appointment> streamAll();
+
     long countByDoctorId(Long doctorId);
     long countByStatus(String status);
 
     // ✅ Fixed: Native SQL for PostgreSQL DATE() function
     @Query(
-        value = "SELECT COUNT(*) FROM appointments a WHERE DATE(a.scheduled_at) = CURRENT_DATE",
+        value = "SELECT COUNT(*) FROM appointments a WHERE DATE(a.scheduled_at) = CURRENT_DATE " +
+                "AND NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = a.patient_id AND p.deleted_at IS NOT NULL)",
         nativeQuery = true
     )
     long countTodayAppointments();
 
     // ✅ Fixed: Use native query with ILIKE for case-insensitive search in PostgreSQL
     @Query(
-        value = "SELECT * FROM appointments a " +
+        value = "SELECT a.* FROM appointments a " +
                 "JOIN patients p ON a.patient_id = p.id " +
-                "WHERE p.full_name ILIKE %:query% OR p.code ILIKE %:query%",
+                "WHERE p.deleted_at IS NULL AND (p.full_name ILIKE %:query% OR p.code ILIKE %:query%)",
         nativeQuery = true
     )
     List<Appointment> searchByPatientNameOrCode(@Param("query") String query);
@@ -0,0 +1,8 @@
+package com.healthops.appointment;
+
+import java.time.Instant;
+
+// List view of an appointment without the reason text column
+public record AppointmentSummary(Long id, Instant scheduledAt, String status,
+                                 Long patientId, String patientCode, String patientName,
+                                 Long doctorId, String doctorName) {}
@@ -2,29 +2,41 @@ package com.healthops.bootstrap;
 
 import com.healthops.doctor.Doctor;
 import com.healthops.doctor.DoctorRepository;
+import com.healthops.jobs.JobLeases;
+import com.healthops.tenant.Tenants;
 import com.healthops.user.RoleEntity;
 import com.healthops.user.RoleRepository;
 import com.healthops.user.User;
 import com.healthops.user.UserRepository;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
 
 @Component
+@ConditionalOnProperty(name = "seed.enabled", havingValue = "true", matchIfMissing = true)
 public class DataLoader implements CommandLineRunner {
 
   private final UserRepository userRepo;
   private final RoleRepository roleRepo;
   private final DoctorRepository doctorRepo;
-  
+  private final Tenants tenants;
+  private final JobLeases leases;
 
-  public DataLoader(UserRepository userRepo, RoleRepository roleRepo, DoctorRepository doctorRepo) {
-    this.userRepo = userRepo; this.roleRepo = roleRepo; this.doctorRepo = doctorRepo;
+  public DataLoader(UserRepository userRepo, RoleRepository roleRepo, DoctorRepository doctorRepo, Tenants tenants,
+                    JobLeases leases) {
+    this.userRepo = userRepo; this.roleRepo = roleRepo; this.doctorRepo = doctorRepo; this.tenants = tenants;
+    this.leases = leases;
   }
 
+  // Every clinic gets the same demo accounts; instances starting together seed it once
   @Override
 public void run(String... args) {
+    tenants.forEach(() -> leases.runOnce("seed", lease -> seed()));
+}
+
+  private void seed() {
     User admin = createIfMissing("admin@healthops.com", "Admin User", "Admin@123", "ADMIN");
     User doctor = createIfMissing("doc1@healthops.com", "Dr. Smith", "Doctor@123", "DOCTOR");
     User reception = createIfMissing("reception@healthops.com", "Reception One", "Reception@123", "RECEPTIONIST");
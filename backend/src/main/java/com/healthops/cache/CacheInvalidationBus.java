@@ -0,0 +1,266 @@
+package com.healthops.cache;
+
+import com.healthops.tenant.TenantRoutingDataSource;
+import com.healthops.tenant.Tenants;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps in-process caches coherent across instances with PostgreSQL LISTEN/NOTIFY.
+ * Each clinic database gets a publisher and a listener thread, each on a dedicated
+ * connection outside the pool. Messages are {@code node|seq|tenant|key[,key...]};
+ * a receiver that sees a sender's sequence jump, or that had to reconnect, cannot
+ * know what it missed and invalidates everything. Publishers keep unsent messages
+ * across reconnects, so a jump only happens when a sender's outbox overflowed.
+ */
+@Component
+@Lazy(false)
+public class CacheInvalidationBus {
+  private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+  // NOTIFY payloads must stay below 8000 bytes
+  private static final int MAX_PAYLOAD = 7000;
+
+  private final TenantRoutingDataSource dataSource;
+  private final Tenants tenants;
+  private final boolean enabled;
+  private final String channel;
+  private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+  private final Set<String> overflowed = ConcurrentHashMap.newKeySet();
+  private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+  private final Map<String, BlockingQueue<String>> outboxes = new ConcurrentHashMap<>();
+  private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private volatile boolean running;
+
+  public CacheInvalidationBus(TenantRoutingDataSource dataSource, Tenants tenants,
+                              @Value("${cache.bus.enabled:true}") boolean enabled,
+                              @Value("${cache.bus.channel:healthops_cache}") String channel) {
+    this.dataSource = dataSource;
+    this.tenants = tenants;
+    this.enabled = enabled;
+    this.channel = channel;
+  }
+
+  public String nodeId() {
+    return nodeId;
+  }
+
+  public void addListener(InvalidationListener listener) {
+    listeners.add(listener);
+  }
+
+  /** Queues a key for the other instances; call after the write has committed. */
+  public void publish(String tenant, String key) {
+    BlockingQueue<String> outbox = outboxes.get(tenant);
+    if (outbox != null && !outbox.offer(key)) {
+      overflowed.add(tenant);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void start() {
+    if (!enabled || running) {
+      return;
+    }
+    running = true;
+    for (String tenant : tenants.ids()) {
+      outboxes.put(tenant, new LinkedBlockingQueue<>(10_000));
+      startThread("cache-publish-" + tenant, () -> publishLoop(tenant));
+      startThread("cache-listen-" + tenant, () -> listenLoop(tenant));
+    }
+    log.info("Cache invalidation bus started as node {}", nodeId);
+  }
+
+  @PreDestroy
+  public synchronized void stop() {
+    running = false;
+    threads.forEach(Thread::interrupt);
+  }
+
+  private void startThread(String name, Runnable loop) {
+    Thread t = new Thread(loop, name);
+    t.setDaemon(true);
+    threads.add(t);
+    t.start();
+  }
+
+  private void publishLoop(String tenant) {
+    BlockingQueue<String> outbox = outboxes.get(tenant);
+    long sequence = 0;
+    // Messages not yet confirmed sent survive a reconnect and keep their place in the sequence
+    Deque<String> pending = new ArrayDeque<>();
+    long backoff = 1000;
+    while (running) {
+      try (Connection con = connect(tenant)) {
+        backoff = 1000;
+        while (running) {
+          if (pending.isEmpty()) {
+            String first = outbox.poll(30, TimeUnit.SECONDS);
+            if (first == null) {
+              con.createStatement().execute("SELECT 1");
+              continue;
+            }
+            // Coalesce whatever else is queued into as few messages as possible
+            Set<String> keys = new LinkedHashSet<>(List.of(first));
+            List<String> more = new ArrayList<>();
+            outbox.drainTo(more);
+            keys.addAll(more);
+            pending.addAll(batches(keys));
+          }
+          // Skipping a number tells receivers that keys were dropped and they must invalidate everything
+          if (overflowed.remove(tenant)) {
+            sequence++;
+          }
+          try (var ps = con.prepareStatement("SELECT pg_notify(?, ?)")) {
+            ps.setString(1, channel);
+            ps.setString(2, nodeId + "|" + (sequence + 1) + "|" + tenant + "|" + pending.peek());
+            ps.execute();
+          }
+          sequence++;
+          pending.poll();
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (SQLException e) {
+        log.warn("Cache bus publisher for {} lost its connection, retrying in {} ms: {}", tenant, backoff, e.getMessage());
+        if (!sleep(backoff)) {
+          return;
+        }
+        backoff = Math.min(backoff * 2, 30_000);
+      }
+    }
+  }
+
+  private static List<String> batches(Collection<String> keys) {
+    List<String> batches = new ArrayList<>();
+    StringBuilder batch = new StringBuilder();
+    for (String key : keys) {
+      if (batch.length() > 0 && batch.length() + key.length() + 1 > MAX_PAYLOAD) {
+        batches.add(batch.toString());
+        batch.setLength(0);
+      }
+      if (batch.length() > 0) {
+        batch.append(',');
+      }
+      batch.append(key);
+    }
+    batches.add(batch.toString());
+    return batches;
+  }
+
+  private void listenLoop(String tenant) {
+    long backoff = 1000;
+    boolean reconnecting = false;
+    while (running) {
+      try (Connection con = connect(tenant)) {
+        con.createStatement().execute("LISTEN " + channel);
+        if (reconnecting) {
+          log.info("Cache bus listener for {} reconnected; invalidating all caches", tenant);
+          invalidateAll();
+        }
+        backoff = 1000;
+        reconnecting = false;
+        PGConnection pg = con.unwrap(PGConnection.class);
+        long lastCheck = System.currentTimeMillis();
+        while (running) {
+          PGNotification[] notifications = pg.getNotifications(5000);
+          if (notifications != null) {
+            for (PGNotification n : notifications) {
+              receive(tenant, n.getParameter());
+            }
+          }
+          // getNotifications does not notice a half-open connection on its own
+          if (System.currentTimeMillis() - lastCheck > 30_000) {
+            con.createStatement().execute("SELECT 1");
+            lastCheck = System.currentTimeMillis();
+          }
+        }
+      } catch (SQLException e) {
+        if (!running) {
+          return;
+        }
+        log.warn("Cache bus listener for {} lost its connection, retrying in {} ms: {}", tenant, backoff, e.getMessage());
+        reconnecting = true;
+        if (!sleep(backoff)) {
+          return;
+        }
+        backoff = Math.min(backoff * 2, 30_000);
+      }
+    }
+  }
+
+  private void receive(String listeningTenant, String payload) {
+    String[] parts = payload.split("\\|", 4);
+    if (parts.length != 4 || parts[0].equals(nodeId)) {
+      return;
+    }
+    // Clinics sharing a database (schema tenants) also share the channel
+    if (!parts[2].equals(listeningTenant)) {
+      return;
+    }
+    long seq;
+    try {
+      seq = Long.parseLong(parts[1]);
+    } catch (NumberFormatException e) {
+      return;
+    }
+    // Sequences are per sender and clinic; the first message seen from a sender sets the baseline
+    Long previous = lastSeen.put(parts[0] + "|" + listeningTenant, seq);
+    if (previous != null && seq > previous + 1) {
+      log.info("Cache bus missed {} message(s) from node {} for {}; invalidating all caches",
+          seq - previous - 1, parts[0], listeningTenant);
+      invalidateAll();
+      return;
+    }
+    for (String key : parts[3].split(",")) {
+      for (InvalidationListener listener : listeners) {
+        listener.invalidate(parts[2], key);
+      }
+    }
+  }
+
+  private void invalidateAll() {
+    for (InvalidationListener listener : listeners) {
+      listener.invalidateAll();
+    }
+  }
+
+  private Connection connect(String tenant) throws SQLException {
+    DataSource ds = dataSource.dataSource(tenant);
+    if (ds instanceof HikariDataSource hikari) {
+      Properties props = new Properties();
+      props.setProperty("user", hikari.getUsername());
+      props.setProperty("password", hikari.getPassword());
+      props.setProperty("ApplicationName", "healthops-cache-bus");
+      Connection con = DriverManager.getConnection(hikari.getJdbcUrl(), props);
+      con.setAutoCommit(true);
+      return con;
+    }
+    return ds.getConnection();
+  }
+
+  private static boolean sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package com.healthops.cache;
+
+/** Receives invalidations published by other instances through {@link CacheInvalidationBus}. */
+public interface InvalidationListener {
+
+  void invalidate(String tenant, String key);
+
+  /** Messages may have been missed; drop everything cached. */
+  void invalidateAll();
+}
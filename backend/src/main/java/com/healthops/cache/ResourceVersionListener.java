@@ -0,0 +1,38 @@
+package com.healthops.cache;
+
+import com.healthops.doctor.Availability;
+import com.healthops.doctor.Doctor;
+import com.healthops.doctor.Holiday;
+import com.healthops.patient.Patient;
+import com.healthops.user.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+// Registered on the entities whose lists are served with version ETags
+public class ResourceVersionListener {
+  private final ResourceVersions versions;
+
+  public ResourceVersionListener(ResourceVersions versions) {
+    this.versions = versions;
+  }
+
+  @PostPersist @PostUpdate @PostRemove
+  public void onChange(Object entity) {
+    if (entity instanceof Doctor d) {
+      versions.bump(ResourceVersions.DOCTORS);
+      // Availability and holidays go away with the doctor through ON DELETE CASCADE
+      versions.bump(ResourceVersions.availability(d.getId()));
+      versions.bump(ResourceVersions.holidays(d.getId()));
+    } else if (entity instanceof User) {
+      // Doctor lists embed the doctor's user
+      versions.bump(ResourceVersions.DOCTORS);
+    } else if (entity instanceof Patient) {
+      versions.bump(ResourceVersions.PATIENTS);
+    } else if (entity instanceof Availability a && a.getDoctor() != null) {
+      versions.bump(ResourceVersions.availability(a.getDoctor().getId()));
+    } else if (entity instanceof Holiday h && h.getDoctor() != null) {
+      versions.bump(ResourceVersions.holidays(h.getDoctor().getId()));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.healthops.cache;
+
+import com.healthops.tenant.TenantContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory version counters for rarely changing collections. Writes bump the
+ * counter of every collection they affect, so list endpoints can answer a
+ * conditional GET from the counter alone without querying the database.
+ * Counters are kept per clinic, keyed by the current {@link TenantContext}, and
+ * bumps are relayed to other instances through the {@link CacheInvalidationBus}.
+ */
+@Component
+public class ResourceVersions implements InvalidationListener {
+  public static final String DOCTORS = "doctors";
+  public static final String PATIENTS = "patients";
+
+  // Distinguishes ETags of this process from those handed out before a restart or a full invalidation
+  private volatile String epoch = newEpoch();
+  private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private final CacheInvalidationBus bus;
+
+  public ResourceVersions(CacheInvalidationBus bus) {
+    this.bus = bus;
+    bus.addListener(this);
+  }
+
+  public static String availability(Long doctorId) { return "availability:" + doctorId; }
+  public static String holidays(Long doctorId) { return "holidays:" + doctorId; }
+
+  public long current(String key) {
+    return counter(scoped(key)).get();
+  }
+
+  public String etag(String key) {
+    return "\"" + epoch + "-" + current(key) + "\"";
+  }
+
+  /** Bumps once the surrounding transaction commits, so readers never cache uncommitted state. */
+  public void bump(String key) {
+    String tenant = TenantContext.current();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          apply(tenant, key);
+        }
+      });
+    } else {
+      apply(tenant, key);
+    }
+  }
+
+  @Override
+  public void invalidate(String tenant, String key) {
+    counter(scoped(tenant, key)).incrementAndGet();
+  }
+
+  @Override
+  public void invalidateAll() {
+    epoch = newEpoch();
+  }
+
+  private void apply(String tenant, String key) {
+    counter(scoped(tenant, key)).incrementAndGet();
+    if (tenant != null) {
+      bus.publish(tenant, key);
+    }
+  }
+
+  private static String scoped(String key) {
+    return scoped(TenantContext.current(), key);
+  }
+
+  private static String scoped(String tenant, String key) {
+    return tenant != null ? tenant + "/" + key : key;
+  }
+
+  private static String newEpoch() {
+    return Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  }
+
+  private AtomicLong counter(String key) {
+    return versions.computeIfAbsent(key, k -> new AtomicLong());
+  }
+}
@@ -0,0 +1,150 @@
+package com.healthops.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthops.tenant.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON bodies of hot read endpoints, optionally with a gzipped copy,
+ * so a hit costs neither a query nor a Jackson pass. Each entry remembers the
+ * {@link ResourceVersions} ETag it was built for and is only served while that is
+ * still current: a write bumps the version once it commits, and the next read
+ * rebuilds the entry. Entries are evicted least recently used first once their
+ * bytes exceed {@code cache.responses.max-size}.
+ */
+@Component
+public class ResponseCache implements InvalidationListener {
+
+  /** A cached body; {@code gzipped} is null when the body is too small to be worth compressing. */
+  public record Entry(String versionKey, String etag, byte[] json, byte[] gzipped) {
+    long size() {
+      return json.length + (gzipped != null ? gzipped.length : 0);
+    }
+  }
+
+  private final ObjectMapper mapper;
+  private final boolean enabled;
+  private final long maxBytes;
+  private final int gzipMinBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long bytes;
+  private final Counter hits;
+  private final Counter misses;
+
+  public ResponseCache(ObjectMapper mapper, CacheInvalidationBus bus, MeterRegistry registry,
+                       @Value("${cache.responses.enabled:true}") boolean enabled,
+                       @Value("${cache.responses.max-size:16MB}") DataSize maxSize,
+                       @Value("${cache.responses.gzip-min-size:1KB}") DataSize gzipMinSize) {
+    this.mapper = mapper;
+    this.enabled = enabled;
+    this.maxBytes = maxSize.toBytes();
+    this.gzipMinBytes = (int) gzipMinSize.toBytes();
+    bus.addListener(this);
+    this.hits = Counter.builder("healthops.response.cache.requests").tag("result", "hit")
+        .description("Reads answered from the response cache").register(registry);
+    this.misses = Counter.builder("healthops.response.cache.requests").tag("result", "miss")
+        .description("Reads that had to query and serialize").register(registry);
+    Gauge.builder("healthops.response.cache.bytes", this, ResponseCache::size)
+        .description("Bytes held by the response cache")
+        .register(registry);
+  }
+
+  /**
+   * The body cached under {@code key} for the current clinic if it was built for
+   * {@code etag}, which must be the current ETag of {@code versionKey}; otherwise
+   * serializes {@code body} and caches it. Returns null if {@code body} does.
+   */
+  public Entry get(String key, String versionKey, String etag, Supplier<?> body) {
+    String scoped = scoped(TenantContext.current(), key);
+    if (enabled) {
+      Entry cached;
+      synchronized (this) {
+        cached = entries.get(scoped);
+      }
+      if (cached != null && cached.etag().equals(etag)) {
+        hits.increment();
+        return cached;
+      }
+    }
+    misses.increment();
+    Object value = body.get();
+    if (value == null) {
+      return null;
+    }
+    byte[] json = serialize(value);
+    Entry entry = new Entry(scoped(TenantContext.current(), versionKey), etag, json,
+        json.length >= gzipMinBytes ? gzip(json) : null);
+    if (enabled && entry.size() <= maxBytes) {
+      put(scoped, entry);
+    }
+    return entry;
+  }
+
+  @Override
+  public synchronized void invalidate(String tenant, String key) {
+    String versionKey = scoped(tenant, key);
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      Entry entry = it.next();
+      if (entry.versionKey().equals(versionKey)) {
+        bytes -= entry.size();
+        it.remove();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void invalidateAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    Entry previous = entries.put(key, entry);
+    bytes += entry.size() - (previous != null ? previous.size() : 0);
+    for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); bytes > maxBytes && it.hasNext(); ) {
+      bytes -= it.next().getValue().size();
+      it.remove();
+    }
+  }
+
+  private synchronized long size() {
+    return bytes;
+  }
+
+  private byte[] serialize(Object value) {
+    try {
+      return mapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] gzip(byte[] json) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+    try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+      gz.write(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private static String scoped(String tenant, String key) {
+    return tenant != null ? tenant + "/" + key : key;
+  }
+}
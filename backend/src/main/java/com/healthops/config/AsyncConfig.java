@@ -0,0 +1,21 @@
+package com.healthops.config;
+
+import com.healthops.admission.EndpointClass;
+import com.healthops.admission.EndpointClassContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+@Configuration
+public class AsyncConfig {
+
+  // Boot applies this to the executor that writes streamed responses, so their queries
+  // use the same connection sub-pool as the request that started them
+  @Bean
+  public TaskDecorator endpointClassPropagation() {
+    return task -> {
+      EndpointClass endpointClass = EndpointClassContext.current();
+      return endpointClass == null ? task : () -> EndpointClassContext.runAs(endpointClass, task);
+    };
+  }
+}
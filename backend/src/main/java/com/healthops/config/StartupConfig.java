@@ -0,0 +1,21 @@
+package com.healthops.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.bind.annotation.RestController;
+
+@Configuration
+public class StartupConfig {
+
+  // With spring.main.lazy-initialization (prod profile) only the request path is
+  // built up front, so the first request does not pay for it
+  @Bean
+  static LazyInitializationExcludeFilter requestPathEagerly() {
+    return (beanName, definition, beanType) ->
+        AnnotatedElementUtils.hasAnnotation(beanType, RestController.class)
+            || SecurityFilterChain.class.isAssignableFrom(beanType);
+  }
+}
@@ -1,9 +1,11 @@
 package com.healthops.doctor;
 
+import com.healthops.cache.ResourceVersionListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity @Table(name="availability")
+@EntityListeners(ResourceVersionListener.class)
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Availability {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
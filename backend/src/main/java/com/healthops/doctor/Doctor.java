@@ -1,10 +1,17 @@
 package com.healthops.doctor;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.healthops.cache.ResourceVersionListener;
 import com.healthops.user.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.Instant;
 
 @Entity @Table(name="doctors")
+@EntityListeners(ResourceVersionListener.class)
+@SQLRestriction("deleted_at IS NULL")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Doctor {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,4 +23,8 @@ public class Doctor {
 
   private String specialization;
   private String phone;
+
+  // Set on delete; the row itself is removed later by SoftDeletePurger
+  @JsonIgnore
+  private Instant deletedAt;
 }
@@ -12,4 +12,8 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
   
   @Query("SELECT d FROM Doctor d WHERE d.user.email = :email")
   Optional<Doctor> findByUserEmail(@Param("email") String email);
+
+  // Just the id, for writes that only need to reference the doctor
+  @Query("SELECT d.id FROM Doctor d WHERE d.user.email = :email")
+  Optional<Long> findIdByUserEmail(@Param("email") String email);
 }
\ No newline at end of file
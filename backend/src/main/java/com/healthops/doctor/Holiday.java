@@ -1,11 +1,13 @@
 package com.healthops.doctor;
 
+import com.healthops.cache.ResourceVersionListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDate;
 
 @Entity @Table(name="holidays")
+@EntityListeners(ResourceVersionListener.class)
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Holiday {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,128 @@
+package com.healthops.export;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionCodec;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.compression.NoCompressionCodec;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Writes an {@link ExportTable} as an Arrow IPC stream. Rows are read through a
+ * cursor and sent as record batches of {@code exports.batch-rows}, each
+ * compressed column by column with zstd, so memory is bounded by one
+ * batch however large the table is.
+ */
+@Service
+public class ArrowExporter {
+  public static final String MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate readOnlyTx;
+  private final BufferAllocator allocator;
+  private final int batchRows;
+
+  public ArrowExporter(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                       @Value("${exports.batch-rows:16384}") int batchRows,
+                       @Value("${exports.max-memory:256MB}") DataSize maxMemory) {
+    this.jdbc = jdbc;
+    this.readOnlyTx = new TransactionTemplate(txManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.batchRows = batchRows;
+    this.allocator = new RootAllocator(maxMemory.toBytes());
+  }
+
+  /** Parses {@code zstd} or {@code none}; lz4 is left out because its Java encoder is far slower than zstd's. */
+  public static CompressionUtil.CodecType codec(String name) {
+    return switch (name.toLowerCase()) {
+      case "zstd" -> CompressionUtil.CodecType.ZSTD;
+      case "none" -> CompressionUtil.CodecType.NO_COMPRESSION;
+      default -> throw new IllegalArgumentException("Unknown compression: " + name);
+    };
+  }
+
+  /** Writes the table to {@code out} within a read-only transaction on the current clinic. */
+  public long export(ExportTable table, CompressionUtil.CodecType codec, OutputStream out) {
+    return readOnlyTx.execute(status -> {
+      try (BufferAllocator child = allocator.newChildAllocator("export-" + table.name().toLowerCase(), 0, Long.MAX_VALUE);
+           VectorSchemaRoot batch = VectorSchemaRoot.create(table.schema(), child)) {
+        batch.allocateNew();
+        CompressionCodec.Factory codecs = codec == CompressionUtil.CodecType.NO_COMPRESSION
+            ? NoCompressionCodec.Factory.INSTANCE : CommonsCompressionFactory.INSTANCE;
+        ArrowStreamWriter writer = new ArrowStreamWriter(batch, null, unclosable(out), IpcOption.DEFAULT, codecs, codec);
+        writer.start();
+        List<FieldVector> vectors = batch.getFieldVectors();
+        List<ExportTable.Column> columns = table.columns();
+        long[] total = {0};
+        int[] rows = {0};
+        jdbc.query(con -> {
+          var ps = con.prepareStatement(table.sql());
+          ps.setFetchSize(batchRows);
+          return ps;
+        }, rs -> {
+          for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).type().copy(rs, i + 1, vectors.get(i), rows[0]);
+          }
+          total[0]++;
+          if (++rows[0] == batchRows) {
+            flush(writer, batch, rows[0]);
+            rows[0] = 0;
+          }
+        });
+        if (rows[0] > 0 || total[0] == 0) {
+          flush(writer, batch, rows[0]);
+        }
+        writer.end();
+        return total[0];
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  @PreDestroy
+  public void close() {
+    allocator.close();
+  }
+
+  // Buffers are kept and refilled for the next batch, so memory stays at one batch
+  private static void flush(ArrowStreamWriter writer, VectorSchemaRoot batch, int rows) {
+    batch.setRowCount(rows);
+    try {
+      writer.writeBatch();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    batch.getFieldVectors().forEach(ValueVector::reset);
+  }
+
+  // The servlet container owns the response stream
+  private static WritableByteChannel unclosable(OutputStream out) {
+    WritableByteChannel channel = Channels.newChannel(out);
+    return new WritableByteChannel() {
+      @Override public int write(ByteBuffer src) throws IOException { return channel.write(src); }
+      @Override public boolean isOpen() { return true; }
+      @Override public void close() {}
+    };
+  }
+}
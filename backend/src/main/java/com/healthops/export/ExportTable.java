@@ -0,0 +1,131 @@
+package com.healthops.export;
+
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tables available as Arrow exports. Columns keep their database types and
+ * values unchanged: ids as int64, timestamps as UTC microseconds, dates as days
+ * and text as UTF-8, so notes keep their commas and line breaks.
+ */
+public enum ExportTable {
+  PATIENTS("SELECT id, code, full_name, dob, phone, address FROM patients WHERE deleted_at IS NULL ORDER BY id",
+      new Column("id", Type.INT64, false), new Column("code", Type.TEXT, false),
+      new Column("full_name", Type.TEXT, false), new Column("dob", Type.DATE, true),
+      new Column("phone", Type.TEXT, true), new Column("address", Type.TEXT, true)),
+
+  APPOINTMENTS("SELECT a.id, a.patient_id, a.doctor_id, a.scheduled_at, a.status, a.reason, a.created_by " +
+      "FROM appointments a WHERE NOT EXISTS " +
+      "(SELECT 1 FROM patients p WHERE p.id = a.patient_id AND p.deleted_at IS NOT NULL)",
+      new Column("id", Type.INT64, false), new Column("patient_id", Type.INT64, true),
+      new Column("doctor_id", Type.INT64, true), new Column("scheduled_at", Type.TIMESTAMP, true),
+      new Column("status", Type.TEXT, true), new Column("reason", Type.TEXT, true),
+      new Column("created_by", Type.INT64, true)),
+
+  VISITS("SELECT v.id, v.patient_id, v.doctor_id, v.appointment_id, v.visit_at, v.notes, v.diagnosis, v.prescription " +
+      "FROM visits v WHERE NOT EXISTS " +
+      "(SELECT 1 FROM patients p WHERE p.id = v.patient_id AND p.deleted_at IS NOT NULL)",
+      new Column("id", Type.INT64, false), new Column("patient_id", Type.INT64, true),
+      new Column("doctor_id", Type.INT64, true), new Column("appointment_id", Type.INT64, true),
+      new Column("visit_at", Type.TIMESTAMP, true), new Column("notes", Type.TEXT, true),
+      new Column("diagnosis", Type.TEXT, true), new Column("prescription", Type.TEXT, true));
+
+  private final String sql;
+  private final List<Column> columns;
+  private final Schema schema;
+
+  ExportTable(String sql, Column... columns) {
+    this.sql = sql;
+    this.columns = List.of(columns);
+    this.schema = new Schema(Arrays.stream(columns).map(Column::field).toList());
+  }
+
+  public String sql() { return sql; }
+  public List<Column> columns() { return columns; }
+  public Schema schema() { return schema; }
+
+  public String fileName() {
+    return name().toLowerCase() + ".arrows";
+  }
+
+  public record Column(String name, Type type, boolean nullable) {
+    Field field() {
+      return new Field(name, new FieldType(nullable, type.arrowType, null), null);
+    }
+  }
+
+  /** Column types, each reading its JDBC value into the matching Arrow vector. */
+  public enum Type {
+    INT64(new ArrowType.Int(64, true)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        long value = rs.getLong(column);
+        if (rs.wasNull()) {
+          vector.setNull(row);
+        } else {
+          ((BigIntVector) vector).setSafe(row, value);
+        }
+      }
+    },
+    TIMESTAMP(new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC")) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        if (value == null) {
+          vector.setNull(row);
+        } else {
+          Instant at = value.toInstant();
+          ((TimeStampMicroTZVector) vector).setSafe(row, at.getEpochSecond() * 1_000_000 + at.getNano() / 1_000);
+        }
+      }
+    },
+    DATE(new ArrowType.Date(DateUnit.DAY)) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        LocalDate value = rs.getObject(column, LocalDate.class);
+        if (value == null) {
+          vector.setNull(row);
+        } else {
+          ((DateDayVector) vector).setSafe(row, (int) value.toEpochDay());
+        }
+      }
+    },
+    TEXT(ArrowType.Utf8.INSTANCE) {
+      @Override
+      void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException {
+        String value = rs.getString(column);
+        if (value == null) {
+          vector.setNull(row);
+        } else {
+          ((VarCharVector) vector).setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    };
+
+    private final ArrowType arrowType;
+
+    Type(ArrowType arrowType) {
+      this.arrowType = arrowType;
+    }
+
+    abstract void copy(ResultSet rs, int column, FieldVector vector, int row) throws SQLException;
+  }
+}
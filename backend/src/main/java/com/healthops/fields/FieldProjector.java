@@ -0,0 +1,96 @@
+package com.healthops.fields;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Runs a query that selects only the columns of a {@link FieldSet}, joining the
+ * associations it reaches into, and returns each row as nested maps shaped like
+ * the entity's JSON. An association whose row is missing comes back as null.
+ */
+@Service
+public class FieldProjector {
+  private final EntityManager em;
+
+  public FieldProjector(EntityManager em) {
+    this.em = em;
+  }
+
+  public FieldSet parse(Class<?> type, String fields) {
+    return FieldSet.parse(em.getMetamodel(), type, fields);
+  }
+
+  /** Rows of the selection's entity matching every {@code where} path exactly, in {@code sort} order. */
+  public List<Map<String, Object>> list(FieldSet fields, Map<String, ?> where, Sort sort) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = cb.createTupleQuery();
+    Root<?> root = query.from(fields.type());
+
+    List<Selection<?>> columns = new ArrayList<>();
+    for (FieldSet.Node child : fields.tree().children.values()) {
+      select(root, child, columns);
+    }
+    query.multiselect(columns);
+    query.where(where.entrySet().stream()
+        .map(e -> cb.equal(path(root, e.getKey()), e.getValue()))
+        .toArray(Predicate[]::new));
+    query.orderBy(sort.stream()
+        .map(o -> o.isAscending() ? cb.asc(path(root, o.getProperty())) : cb.desc(path(root, o.getProperty())))
+        .toList());
+
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (Tuple tuple : em.createQuery(query).getResultList()) {
+      int[] column = {0};
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (FieldSet.Node child : fields.tree().children.values()) {
+        read(tuple, column, child, row);
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  public Optional<Map<String, Object>> findById(FieldSet fields, Object id) {
+    String idName = fields.tree().idName();
+    return list(fields, Map.of(idName, id), Sort.unsorted()).stream().findFirst();
+  }
+
+  // Association nodes also select their id, so a missing row can be told apart from null columns
+  private static void select(From<?, ?> from, FieldSet.Node node, List<Selection<?>> columns) {
+    if (!node.isAssociation()) {
+      columns.add(from.get(node.name));
+      return;
+    }
+    Join<?, ?> join = from.join(node.name, JoinType.LEFT);
+    columns.add(join.get(node.idName()));
+    for (FieldSet.Node child : node.children.values()) {
+      select(join, child, columns);
+    }
+  }
+
+  private static void read(Tuple tuple, int[] column, FieldSet.Node node, Map<String, Object> into) {
+    Object value = tuple.get(column[0]++);
+    if (!node.isAssociation()) {
+      into.put(node.name, value);
+      return;
+    }
+    Map<String, Object> nested = new LinkedHashMap<>();
+    for (FieldSet.Node child : node.children.values()) {
+      read(tuple, column, child, nested);
+    }
+    into.put(node.name, value == null ? null : nested);
+  }
+
+  private static Path<?> path(Root<?> root, String dotted) {
+    Path<?> path = root;
+    for (String part : dotted.split("\\.")) {
+      path = path.get(part);
+    }
+    return path;
+  }
+}
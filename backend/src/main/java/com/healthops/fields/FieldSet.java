@@ -0,0 +1,138 @@
+package com.healthops.fields;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.lang.reflect.AnnotatedElement;
+import java.util.*;
+
+/**
+ * A validated {@code fields=} selection such as {@code id,code,doctor.user.fullName},
+ * held as a tree of attributes below one entity. Naming an association without
+ * sub-fields selects its plain attributes. Attributes hidden from JSON with
+ * {@link JsonIgnore} cannot be selected, and neither can collections.
+ */
+public final class FieldSet {
+  private static final int MAX_DEPTH = 4;
+
+  /** One selected attribute; associations carry their id attribute and selected children. */
+  static final class Node {
+    final String name;
+    final EntityType<?> association;
+    final Map<String, Node> children = new LinkedHashMap<>();
+
+    Node(String name, EntityType<?> association) {
+      this.name = name;
+      this.association = association;
+    }
+
+    boolean isAssociation() {
+      return association != null;
+    }
+
+    String idName() {
+      return association.getId(association.getIdType().getJavaType()).getName();
+    }
+  }
+
+  private final EntityType<?> root;
+  private final Node tree;
+  private final String canonical;
+
+  private FieldSet(EntityType<?> root, Node tree, String canonical) {
+    this.root = root;
+    this.tree = tree;
+    this.canonical = canonical;
+  }
+
+  public static FieldSet parse(Metamodel metamodel, Class<?> type, String fields) {
+    EntityType<?> root = metamodel.entity(type);
+    Node tree = new Node("", root);
+    SortedSet<String> paths = new TreeSet<>();
+    for (String raw : fields.split(",")) {
+      String path = raw.trim();
+      if (!path.isEmpty()) {
+        add(metamodel, tree, path);
+        paths.add(path);
+      }
+    }
+    if (paths.isEmpty()) {
+      throw new InvalidFieldsException("fields must name at least one attribute");
+    }
+    for (Node child : tree.children.values()) {
+      expandBareAssociations(metamodel, child);
+    }
+    return new FieldSet(root, tree, String.join(",", paths));
+  }
+
+  Class<?> type() {
+    return root.getJavaType();
+  }
+
+  Node tree() {
+    return tree;
+  }
+
+  /** Derives a per-selection ETag from the ETag of the full representation. */
+  public String etag(String fullEtag) {
+    String base = fullEtag.endsWith("\"") ? fullEtag.substring(0, fullEtag.length() - 1) : fullEtag;
+    return base + "-f" + Integer.toHexString(canonical.hashCode()) + "\"";
+  }
+
+  private static void add(Metamodel metamodel, Node parent, String path) {
+    String[] parts = path.split("\\.");
+    if (parts.length > MAX_DEPTH) {
+      throw new InvalidFieldsException("Field path is too deep: " + path);
+    }
+    Node node = parent;
+    for (String part : parts) {
+      if (!node.isAssociation()) {
+        throw new InvalidFieldsException("Not an association: " + node.name + " in " + path);
+      }
+      Node current = node;
+      node = current.children.computeIfAbsent(part, name -> child(metamodel, current.association, name, path));
+    }
+  }
+
+  private static Node child(Metamodel metamodel, ManagedType<?> owner, String name, String path) {
+    Attribute<?, ?> attribute;
+    try {
+      attribute = owner.getAttribute(name);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidFieldsException("Unknown field: " + path);
+    }
+    if (isHidden(attribute)) {
+      throw new InvalidFieldsException("Unknown field: " + path);
+    }
+    if (attribute.isCollection()) {
+      throw new InvalidFieldsException("Collections cannot be selected: " + path);
+    }
+    if (attribute.isAssociation()) {
+      return new Node(name, metamodel.entity(((SingularAttribute<?, ?>) attribute).getJavaType()));
+    }
+    return new Node(name, null);
+  }
+
+  private static void expandBareAssociations(Metamodel metamodel, Node node) {
+    if (!node.isAssociation()) {
+      return;
+    }
+    if (node.children.isEmpty()) {
+      node.association.getSingularAttributes().stream()
+          .filter(a -> !a.isAssociation() && !isHidden(a))
+          .sorted(Comparator.comparing((SingularAttribute<?, ?> a) -> !a.isId()).thenComparing(Attribute::getName))
+          .forEach(a -> node.children.put(a.getName(), new Node(a.getName(), null)));
+    }
+    for (Node child : node.children.values()) {
+      expandBareAssociations(metamodel, child);
+    }
+  }
+
+  private static boolean isHidden(Attribute<?, ?> attribute) {
+    return attribute.getJavaMember() instanceof AnnotatedElement member && member.isAnnotationPresent(JsonIgnore.class);
+  }
+}
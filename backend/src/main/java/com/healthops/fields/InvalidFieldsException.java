@@ -0,0 +1,8 @@
+package com.healthops.fields;
+
+// A fields= selection that names unknown, hidden or collection attributes
+public class InvalidFieldsException extends RuntimeException {
+  public InvalidFieldsException(String message) {
+    super(message);
+  }
+}
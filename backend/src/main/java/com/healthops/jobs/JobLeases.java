@@ -0,0 +1,379 @@
+package com.healthops.jobs;
+
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.TenantRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs background jobs on one instance of the cluster at a time. An instance owns
+ * a job in a clinic while it holds a PostgreSQL session-level advisory lock for it
+ * on a connection outside the pool, so the lock goes away with the instance or its
+ * connection. Owners also renew their {@code job_leases} row every
+ * {@code jobs.heartbeat-interval-ms}; an owner whose row is older than
+ * {@code jobs.lease-ttl} while its session lingers (a paused JVM, a half-open
+ * connection) has its session terminated by the next contender. Every change of
+ * owner increases the row's token, which the job checks before it writes, see
+ * {@link Lease#checkFence}.
+ */
+@Component
+@Lazy(false)
+public class JobLeases {
+  private static final Logger log = LoggerFactory.getLogger(JobLeases.class);
+
+  private static final String TAKE_SQL =
+      "UPDATE job_leases SET owner = ?, owner_pid = pg_backend_pid(), token = token + 1, " +
+      "acquired_at = now(), heartbeat_at = now() WHERE name = ? RETURNING token";
+  private static final String BREAK_STALE_SQL =
+      "SELECT pg_terminate_backend(l.pid) FROM pg_locks l JOIN job_leases j ON j.owner_pid = l.pid " +
+      "WHERE j.name = ? AND j.heartbeat_at < now() - make_interval(secs => ?) " +
+      "AND l.locktype = 'advisory' AND l.granted AND l.objsubid = 1 " +
+      "AND l.database = (SELECT oid FROM pg_database WHERE datname = current_database()) " +
+      "AND ((l.classid::bigint << 32) | l.objid::bigint) = ?";
+  private static final String STATUS_SQL =
+      "SELECT name, owner, token, acquired_at, heartbeat_at, last_run_at, " +
+      "owner IS NOT NULL AND heartbeat_at < now() - make_interval(secs => ?) AS stale " +
+      "FROM job_leases ORDER BY name";
+
+  private final TenantRoutingDataSource dataSource;
+  private final JdbcTemplate jdbc;
+  private final Duration ttl;
+  private final String node;
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+  // Not the shared scheduler, whose thread may be busy running the very jobs whose leases need renewing
+  private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "job-lease-heartbeat");
+    t.setDaemon(true);
+    return t;
+  });
+
+  public JobLeases(TenantRoutingDataSource dataSource, JdbcTemplate jdbc,
+                   @Value("${jobs.lease-ttl:30s}") Duration ttl,
+                   @Value("${jobs.node-id:}") String node,
+                   @Value("${jobs.heartbeat-interval-ms:5000}") long heartbeatIntervalMillis) {
+    this.dataSource = dataSource;
+    this.jdbc = jdbc;
+    this.ttl = ttl;
+    this.node = node.isBlank() ? defaultNode() : node;
+    heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** How this instance appears as the owner of its jobs. */
+  public String node() {
+    return node;
+  }
+
+  /**
+   * Runs {@code task} for the current clinic if this instance owns {@code job} or
+   * can take it over, and keeps the lease afterwards, so the job stays with one
+   * instance while it lives. Returns false without running it otherwise.
+   */
+  public boolean runExclusively(String job, Consumer<Lease> task) {
+    return run(job, task, true);
+  }
+
+  /** Like {@link #runExclusively}, but gives the lease up once {@code task} returns; for one-off startup work. */
+  public boolean runOnce(String job, Consumer<Lease> task) {
+    return run(job, task, false);
+  }
+
+  /** Whether {@code job} has run to completion in the current clinic, on any instance. */
+  public boolean hasRun(String job) {
+    return Boolean.TRUE.equals(jdbc.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM job_leases WHERE name = ? AND last_run_at IS NOT NULL)", Boolean.class, job));
+  }
+
+  /** Every job of the current clinic that has ever been leased. */
+  public List<JobStatus> status() {
+    return jdbc.query(STATUS_SQL, (rs, i) -> new JobStatus(rs.getString("name"), rs.getString("owner"),
+        rs.getLong("token"), instant(rs, "acquired_at"), instant(rs, "heartbeat_at"), instant(rs, "last_run_at"),
+        rs.getBoolean("stale")), (double) ttl.toSeconds());
+  }
+
+  void heartbeat() {
+    try {
+      sessions.values().forEach(Session::heartbeat);
+    } catch (RuntimeException e) {
+      // An exception would cancel the schedule
+      log.warn("Job lease heartbeat failed", e);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    heartbeats.shutdownNow();
+    sessions.values().forEach(Session::close);
+  }
+
+  private boolean run(String job, Consumer<Lease> task, boolean keep) {
+    Session session = sessions.computeIfAbsent(TenantContext.current(), Session::new);
+    Lease lease = session.acquire(job, keep);
+    if (lease == null) {
+      log.debug("Job {} of tenant {} is owned by another instance", job, session.tenant);
+      return false;
+    }
+    try {
+      task.accept(lease);
+      session.ran(lease);
+    } finally {
+      if (!keep) {
+        session.release(lease);
+      }
+    }
+    return true;
+  }
+
+  // Advisory lock keys are one bigint per database, shared by every clinic in it
+  static long lockKey(String tenant, String job) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest((tenant + "/" + job).getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(hash).getLong() & Long.MAX_VALUE;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String defaultNode() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      host = "unknown";
+    }
+    return host + "/" + ManagementFactory.getRuntimeMXBean().getPid();
+  }
+
+  private static Instant instant(ResultSet rs, String column) throws SQLException {
+    Timestamp ts = rs.getTimestamp(column);
+    return ts != null ? ts.toInstant() : null;
+  }
+
+  /** The lock connection of one clinic and the leases held on it. */
+  private final class Session {
+    final String tenant;
+    private Connection con;
+    private final Map<String, Lease> held = new HashMap<>();
+    // Jobs this instance runs on a schedule, taken over on the heartbeat once their owner is gone
+    private final Set<String> wanted = new LinkedHashSet<>();
+
+    Session(String tenant) {
+      this.tenant = tenant;
+    }
+
+    synchronized Lease acquire(String job, boolean keep) {
+      Lease lease = held.get(job);
+      if (lease != null && !lease.isLost()) {
+        return lease;
+      }
+      held.remove(job);
+      if (keep) {
+        wanted.add(job);
+      }
+      try {
+        return take(job);
+      } catch (SQLException e) {
+        log.warn("Could not take job {} of tenant {}: {}", job, tenant, e.getMessage());
+        reset();
+        return null;
+      }
+    }
+
+    synchronized void ran(Lease lease) {
+      update("UPDATE job_leases SET last_run_at = now() WHERE name = ? AND token = ?", lease);
+    }
+
+    synchronized void release(Lease lease) {
+      if (held.remove(lease.job()) == null || con == null) {
+        return;
+      }
+      update("UPDATE job_leases SET owner = NULL, owner_pid = NULL WHERE name = ? AND token = ?", lease);
+      try (PreparedStatement ps = con.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+        ps.setLong(1, lockKey(tenant, lease.job()));
+        ps.execute();
+      } catch (SQLException e) {
+        reset();
+      }
+    }
+
+    synchronized void heartbeat() {
+      try {
+        for (var it = held.values().iterator(); it.hasNext(); ) {
+          Lease lease = it.next();
+          try (PreparedStatement ps = connection().prepareStatement(
+              "UPDATE job_leases SET heartbeat_at = now() WHERE name = ? AND token = ? AND owner_pid = pg_backend_pid()")) {
+            ps.setString(1, lease.job());
+            ps.setLong(2, lease.token());
+            if (ps.executeUpdate() == 0) {
+              log.warn("Job {} of tenant {} was taken over by another instance", lease.job(), tenant);
+              lease.markLost();
+              it.remove();
+            }
+          }
+        }
+        for (String job : wanted) {
+          if (!held.containsKey(job)) {
+            take(job);
+          }
+        }
+      } catch (SQLException e) {
+        log.warn("Lost the job lease connection of tenant {}; giving up its jobs: {}", tenant, e.getMessage());
+        reset();
+      }
+    }
+
+    synchronized void close() {
+      for (Lease lease : List.copyOf(held.values())) {
+        release(lease);
+      }
+      reset();
+    }
+
+    private Lease take(String job) throws SQLException {
+      Connection c = connection();
+      long key = lockKey(tenant, job);
+      boolean locked;
+      try (PreparedStatement ps = c.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+          locked = rs.next() && rs.getBoolean(1);
+        }
+      }
+      if (!locked) {
+        breakIfStale(c, job, key);
+        return null;
+      }
+      long token;
+      c.setAutoCommit(false);
+      try {
+        try (PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO job_leases(name) VALUES (?) ON CONFLICT (name) DO NOTHING")) {
+          ps.setString(1, job);
+          ps.executeUpdate();
+        }
+        // Waits for transactions of the previous owner that passed the fence to finish
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM job_leases WHERE name = ? FOR UPDATE")) {
+          ps.setString(1, job);
+          ps.executeQuery().close();
+        }
+        try (PreparedStatement ps = c.prepareStatement(TAKE_SQL)) {
+          ps.setString(1, node);
+          ps.setString(2, job);
+          try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            token = rs.getLong(1);
+          }
+        }
+        c.commit();
+      } catch (SQLException e) {
+        c.rollback();
+        throw e;
+      } finally {
+        c.setAutoCommit(true);
+      }
+      Lease lease = new Lease(job, token, jdbc);
+      held.put(job, lease);
+      log.info("Took job {} of tenant {} with token {}", job, tenant, token);
+      return lease;
+    }
+
+    private void breakIfStale(Connection c, String job, long key) throws SQLException {
+      try (PreparedStatement ps = c.prepareStatement(BREAK_STALE_SQL)) {
+        ps.setString(1, job);
+        ps.setDouble(2, ttl.toSeconds());
+        ps.setLong(3, key);
+        try (ResultSet rs = ps.executeQuery()) {
+          if (rs.next() && rs.getBoolean(1)) {
+            log.warn("Terminated the session of the stale owner of job {} of tenant {}", job, tenant);
+          }
+        }
+      }
+    }
+
+    private void update(String sql, Lease lease) {
+      if (con == null) {
+        return;
+      }
+      try (PreparedStatement ps = con.prepareStatement(sql)) {
+        ps.setString(1, lease.job());
+        ps.setLong(2, lease.token());
+        ps.executeUpdate();
+      } catch (SQLException e) {
+        log.warn("Could not update the lease of job {} of tenant {}: {}", lease.job(), tenant, e.getMessage());
+      }
+    }
+
+    private Connection connection() throws SQLException {
+      if (con == null) {
+        con = connect();
+      }
+      return con;
+    }
+
+    // Closing the connection releases its advisory locks, so every lease on it is gone
+    private void reset() {
+      held.values().forEach(Lease::markLost);
+      held.clear();
+      if (con != null) {
+        try {
+          con.close();
+        } catch (SQLException ignored) {
+          // The server drops its locks with the session either way
+        }
+        con = null;
+      }
+    }
+
+    private Connection connect() throws SQLException {
+      DataSource ds = dataSource.dataSource(tenant);
+      if (ds instanceof HikariDataSource hikari) {
+        Properties props = new Properties();
+        props.setProperty("user", hikari.getUsername());
+        props.setProperty("password", hikari.getPassword());
+        props.setProperty("ApplicationName", "healthops-job-leases");
+        Connection c = DriverManager.getConnection(hikari.getJdbcUrl(), props);
+        if (hikari.getSchema() != null) {
+          c.setSchema(hikari.getSchema());
+        }
+        c.setAutoCommit(true);
+        return c;
+      }
+      return ds.getConnection();
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package com.healthops.jobs;
+
+import java.time.Instant;
+
+/** A row of {@code job_leases}; stale when the owner has not renewed it within the lease TTL. */
+public record JobStatus(String job, String owner, long token, Instant acquiredAt, Instant heartbeatAt,
+                        Instant lastRunAt, boolean stale) {}
@@ -0,0 +1,54 @@
+package com.healthops.jobs;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * This instance's hold on a job in one clinic. The token is the job's fencing
+ * token: it grows every time the job changes owner, so writes guarded by
+ * {@link #checkFence} fail once another instance has taken over.
+ */
+public final class Lease {
+  private final String job;
+  private final long token;
+  private final JdbcTemplate jdbc;
+  private volatile boolean lost;
+
+  Lease(String job, long token, JdbcTemplate jdbc) {
+    this.job = job;
+    this.token = token;
+    this.jdbc = jdbc;
+  }
+
+  public String job() {
+    return job;
+  }
+
+  public long token() {
+    return token;
+  }
+
+  public boolean isLost() {
+    return lost;
+  }
+
+  /**
+   * Throws {@link LeaseLostException} unless the lease still carries this token.
+   * Called inside a transaction, the lease row stays key-share locked until commit,
+   * and a takeover waits for it, so the transaction's writes are still fenced.
+   */
+  public void checkFence() {
+    if (!lost) {
+      Long current = jdbc.query("SELECT token FROM job_leases WHERE name = ? FOR KEY SHARE",
+          rs -> rs.next() ? rs.getLong(1) : null, job);
+      if (current != null && current == token) {
+        return;
+      }
+      lost = true;
+    }
+    throw new LeaseLostException(job, token);
+  }
+
+  void markLost() {
+    lost = true;
+  }
+}
@@ -0,0 +1,8 @@
+package com.healthops.jobs;
+
+/** The job's lease has passed to another instance; whatever the job was doing must stop. */
+public class LeaseLostException extends RuntimeException {
+  public LeaseLostException(String job, long token) {
+    super("Lease " + token + " of job " + job + " is no longer held");
+  }
+}
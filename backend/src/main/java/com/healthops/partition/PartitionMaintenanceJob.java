@@ -0,0 +1,54 @@
+package com.healthops.partition;
+
+import com.healthops.jobs.JobLeases;
+import com.healthops.patient.PatientSummaries;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Scheduled methods are only registered on beans that exist, so this one opts out of lazy init.
+// One instance of the cluster keeps the partition-maintenance lease and does all of it.
+@Component
+@Lazy(false)
+public class PartitionMaintenanceJob {
+  private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceJob.class);
+  private static final String JOB = "partition-maintenance";
+
+  private final PartitionService partitions;
+  private final Tenants tenants;
+  private final PatientSummaries summaries;
+  private final JobLeases leases;
+
+  public PartitionMaintenanceJob(PartitionService partitions, Tenants tenants, PatientSummaries summaries,
+                                 JobLeases leases) {
+    this.partitions = partitions;
+    this.tenants = tenants;
+    this.summaries = summaries;
+    this.leases = leases;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onStartup() {
+    tenants.forEach(() -> leases.runExclusively(JOB, lease -> partitions.ensureFuturePartitions()));
+  }
+
+  @Scheduled(cron = "${partitions.cron:0 30 2 * * *}")
+  public void run() {
+    tenants.forEach(() -> leases.runExclusively(JOB, lease -> {
+      partitions.ensureFuturePartitions();
+      lease.checkFence();
+      var archived = partitions.archiveExpired();
+      if (!archived.isEmpty()) {
+        log.info("Archived {} expired partitions of tenant {}", archived.size(), TenantContext.current());
+        // Archived visits no longer count towards patient summaries
+        summaries.rebuild();
+      }
+    }));
+  }
+}
@@ -0,0 +1,219 @@
+package com.healthops.partition;
+
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.Date;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the monthly partitions of {@link PartitionedTable}s ahead of time and moves
+ * partitions older than the retention window into gzipped CSV files under the
+ * archive directory. Archived months can be downloaded or restored on demand.
+ */
+@Service
+public class PartitionService {
+  private static final Logger log = LoggerFactory.getLogger(PartitionService.class);
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final int monthsAhead;
+  private final int retentionMonths;
+  private final Path archiveDir;
+  private final Tenants tenants;
+
+  public record ArchiveFile(String table, YearMonth month, Path path, long sizeBytes) {}
+
+  public PartitionService(JdbcTemplate jdbc, TransactionTemplate tx, Tenants tenants,
+                          @Value("${partitions.months-ahead:3}") int monthsAhead,
+                          @Value("${partitions.retention-months:24}") int retentionMonths,
+                          @Value("${partitions.archive-dir:./archive}") String archiveDir) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.monthsAhead = monthsAhead;
+    this.retentionMonths = retentionMonths;
+    this.archiveDir = Path.of(archiveDir);
+    this.tenants = tenants;
+  }
+
+  public void ensureFuturePartitions() {
+    YearMonth current = YearMonth.now();
+    for (PartitionedTable table : PartitionedTable.values()) {
+      for (int i = 0; i <= monthsAhead; i++) {
+        createPartition(table, current.plusMonths(i));
+      }
+    }
+  }
+
+  public String createPartition(PartitionedTable table, YearMonth month) {
+    return jdbc.queryForObject("SELECT create_monthly_partition(?, ?, ?)", String.class,
+        table.tableName(), table.keyColumn(), Date.valueOf(month.atDay(1)));
+  }
+
+  /** Archives and drops every monthly partition that ended before the retention window. */
+  public List<ArchiveFile> archiveExpired() {
+    YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+    List<ArchiveFile> archived = new ArrayList<>();
+    for (PartitionedTable table : PartitionedTable.values()) {
+      for (YearMonth month : listPartitionMonths(table)) {
+        if (month.isBefore(cutoff)) {
+          archived.add(archive(table, month));
+        }
+      }
+    }
+    return archived;
+  }
+
+  public List<YearMonth> listPartitionMonths(PartitionedTable table) {
+    String prefix = table.tableName() + "_";
+    return jdbc.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = ?::regclass ORDER BY c.relname", String.class, table.tableName())
+        .stream()
+        .filter(name -> name.matches(prefix + "\\d{4}_\\d{2}"))
+        .map(name -> YearMonth.parse(name.substring(prefix.length()), SUFFIX))
+        .toList();
+  }
+
+  public ArchiveFile archive(PartitionedTable table, YearMonth month) {
+    String partition = partitionName(table, month);
+    Path target = archivePath(table, month);
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(target.getParent());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return tx.execute(status -> {
+      // Holds off writes until the partition is dropped, so the rows dropped are the rows archived
+      jdbc.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+      long expected = jdbc.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+      long written = jdbc.execute((Connection con) -> {
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+          return con.unwrap(PGConnection.class).getCopyAPI().copyOut(
+              "COPY (SELECT " + columns(table) + " FROM " + partition + " ORDER BY " + table.keyColumn() + ") " +
+              "TO STDOUT WITH (FORMAT csv, HEADER)", out);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      if (written != expected) {
+        throw new IllegalStateException("Archived " + written + " of " + expected + " rows from " + partition);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      jdbc.execute("ALTER TABLE " + table.tableName() + " DETACH PARTITION " + partition);
+      jdbc.execute("DROP TABLE " + partition);
+      log.info("Archived {} rows of {} to {}", written, partition, target);
+      return new ArchiveFile(table.tableName(), month, target, sizeOf(target));
+    });
+  }
+
+  /** Loads an archived month back into its partition. It is archived again on the next run if still expired. */
+  public long restore(PartitionedTable table, YearMonth month) {
+    Path source = archivePath(table, month);
+    if (!Files.exists(source)) {
+      throw new IllegalArgumentException("No archive for " + table.tableName() + " " + month);
+    }
+    return tx.execute(status -> {
+      String partition = createPartition(table, month);
+      return jdbc.execute((Connection con) -> {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(source)), StandardCharsets.UTF_8))) {
+          String header = in.readLine();
+          return con.unwrap(PGConnection.class).getCopyAPI().copyIn(
+              "COPY " + partition + " (" + header + ") FROM STDIN WITH (FORMAT csv)", in);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    });
+  }
+
+  public List<ArchiveFile> listArchives() {
+    Path dir = tenantArchiveDir();
+    if (!Files.isDirectory(dir)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      return files
+          .map(this::parseArchive)
+          .flatMap(Optional::stream)
+          .sorted((a, b) -> a.path().compareTo(b.path()))
+          .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public Optional<Path> findArchive(PartitionedTable table, YearMonth month) {
+    Path path = archivePath(table, month);
+    return Files.exists(path) ? Optional.of(path) : Optional.empty();
+  }
+
+  private Optional<ArchiveFile> parseArchive(Path path) {
+    String name = path.getFileName().toString();
+    for (PartitionedTable table : PartitionedTable.values()) {
+      String prefix = table.tableName() + "_";
+      if (name.startsWith(prefix) && name.endsWith(".csv.gz")) {
+        String suffix = name.substring(prefix.length(), name.length() - ".csv.gz".length());
+        if (suffix.matches("\\d{4}_\\d{2}")) {
+          return Optional.of(new ArchiveFile(table.tableName(), YearMonth.parse(suffix, SUFFIX), path, sizeOf(path)));
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  private String columns(PartitionedTable table) {
+    // Generated columns cannot be copied back in, so they are left out of the archive
+    return String.join(", ", jdbc.queryForList(
+        "SELECT quote_ident(attname) FROM pg_attribute " +
+        "WHERE attrelid = ?::regclass AND attnum > 0 AND NOT attisdropped AND attgenerated = '' ORDER BY attnum",
+        String.class, table.tableName()));
+  }
+
+  private String partitionName(PartitionedTable table, YearMonth month) {
+    return table.tableName() + "_" + month.format(SUFFIX);
+  }
+
+  private Path archivePath(PartitionedTable table, YearMonth month) {
+    return tenantArchiveDir().resolve(partitionName(table, month) + ".csv.gz");
+  }
+
+  // The default clinic keeps the top-level directory, so archives from before tenancy stay where they were
+  private Path tenantArchiveDir() {
+    String tenant = TenantContext.current();
+    return tenant == null || tenant.equals(tenants.defaultTenant()) ? archiveDir : archiveDir.resolve(tenant);
+  }
+
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
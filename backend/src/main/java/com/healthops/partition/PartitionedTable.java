@@ -0,0 +1,24 @@
+package com.healthops.partition;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum PartitionedTable {
+  VISITS("visits", "visit_at"),
+  APPOINTMENTS("appointments", "scheduled_at");
+
+  private final String tableName;
+  private final String keyColumn;
+
+  PartitionedTable(String tableName, String keyColumn) {
+    this.tableName = tableName;
+    this.keyColumn = keyColumn;
+  }
+
+  public String tableName() { return tableName; }
+  public String keyColumn() { return keyColumn; }
+
+  public static Optional<PartitionedTable> byTableName(String name) {
+    return Arrays.stream(values()).filter(t -> t.tableName.equalsIgnoreCase(name)).findFirst();
+  }
+}
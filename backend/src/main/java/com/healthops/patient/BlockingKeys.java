@@ -0,0 +1,71 @@
+package com.healthops.patient;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Derives the blocking keys a patient is indexed under. Two registrations of the
+ * same person share at least one key unless name, phone and DOB all differ, so
+ * candidate lookup only has to touch a handful of small index ranges.
+ */
+public final class BlockingKeys {
+  private static final DoubleMetaphone METAPHONE = new DoubleMetaphone();
+
+  private BlockingKeys() {}
+
+  public static Set<String> of(String fullName, LocalDate dob, String phone) {
+    Set<String> keys = new LinkedHashSet<>();
+    String digits = normalizePhone(phone);
+    if (digits != null) {
+      keys.add("p:" + digits);
+    }
+    String[] tokens = nameTokens(fullName);
+    if (tokens.length > 0) {
+      String first = phonetic(tokens[0]);
+      String last = phonetic(tokens[tokens.length - 1]);
+      // Order-independent so "Smith John" and "John Smith" share a block
+      keys.add(first.compareTo(last) <= 0 ? "n:" + first + ":" + last : "n:" + last + ":" + first);
+      if (dob != null) {
+        // Either name part plus DOB survives a changed surname or a misspelt first name
+        keys.add("d:" + dob + ":" + first);
+        keys.add("d:" + dob + ":" + last);
+      }
+    }
+    return keys;
+  }
+
+  /** Last ten digits of the number, or null when too short to be meaningful. */
+  public static String normalizePhone(String phone) {
+    if (phone == null) {
+      return null;
+    }
+    String digits = phone.replaceAll("\\D", "");
+    if (digits.length() < 7) {
+      return null;
+    }
+    return digits.length() > 10 ? digits.substring(digits.length() - 10) : digits;
+  }
+
+  /** Lower-case ASCII letters only, single-spaced. */
+  public static String normalizeName(String name) {
+    if (name == null) {
+      return "";
+    }
+    String ascii = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    return ascii.toLowerCase().replaceAll("[^a-z]+", " ").trim();
+  }
+
+  static String[] nameTokens(String fullName) {
+    String normalized = normalizeName(fullName);
+    return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+  }
+
+  private static String phonetic(String token) {
+    String code = METAPHONE.doubleMetaphone(token);
+    return code == null || code.isEmpty() ? token : code;
+  }
+}
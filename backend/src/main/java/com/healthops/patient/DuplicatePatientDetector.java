@@ -0,0 +1,233 @@
+package com.healthops.patient;
+
+import com.healthops.jobs.JobLeases;
+import com.healthops.tenant.Tenants;
+import com.healthops.warmup.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Finds likely duplicates of a patient through the {@code patient_blocking_keys}
+ * index and scores them on phone, date of birth and name similarity. Writes to
+ * patients that change name, DOB or phone should go through {@link #save} so the
+ * index stays in step.
+ */
+@Service
+@Lazy(false)
+public class DuplicatePatientDetector {
+  private static final Logger log = LoggerFactory.getLogger(DuplicatePatientDetector.class);
+  private static final String BACKFILL_JOB = "duplicate-index-backfill";
+
+  // Caps the rows read per key so a very common name cannot make lookups slow
+  private static final int ROWS_PER_KEY = 200;
+  private static final int MAX_CANDIDATES = 50;
+  private static final int MAX_MATCHES = 5;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final PatientRepository patientRepo;
+  private final Tenants tenants;
+  private final JobLeases leases;
+  private final double threshold;
+
+  public DuplicatePatientDetector(JdbcTemplate jdbc, TransactionTemplate tx, PatientRepository patientRepo, Tenants tenants,
+                                  JobLeases leases, @Value("${patients.duplicates.threshold:0.65}") double threshold) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.patientRepo = patientRepo;
+    this.tenants = tenants;
+    this.leases = leases;
+    this.threshold = threshold;
+  }
+
+  public List<PatientMatch> findMatches(String fullName, LocalDate dob, String phone, Long excludeId) {
+    Set<String> keys = BlockingKeys.of(fullName, dob, phone);
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    String values = String.join(",", Collections.nCopies(keys.size(), "(?)"));
+    List<Object> args = new ArrayList<>(keys);
+    args.add(ROWS_PER_KEY);
+    args.add(MAX_CANDIDATES);
+    List<Long> ids = jdbc.queryForList(
+        "SELECT b.patient_id FROM (VALUES " + values + ") AS q(block_key) " +
+        "CROSS JOIN LATERAL (SELECT patient_id FROM patient_blocking_keys k " +
+        "  WHERE k.block_key = q.block_key LIMIT ?) b " +
+        "GROUP BY b.patient_id ORDER BY count(*) DESC LIMIT ?",
+        Long.class, args.toArray());
+    if (excludeId != null) {
+      ids = ids.stream().filter(id -> !id.equals(excludeId)).toList();
+    }
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    String name = BlockingKeys.normalizeName(fullName);
+    String digits = BlockingKeys.normalizePhone(phone);
+    return patientRepo.findAllById(ids).stream()
+        .map(p -> score(p, name, dob, digits))
+        .filter(m -> m.score() >= threshold)
+        .sorted(Comparator.comparingDouble(PatientMatch::score).reversed())
+        .limit(MAX_MATCHES)
+        .toList();
+  }
+
+  public Patient save(Patient patient) {
+    return tx.execute(status -> {
+      Patient saved = patientRepo.saveAndFlush(patient);
+      jdbc.update("DELETE FROM patient_blocking_keys WHERE patient_id = ?", saved.getId());
+      List<Object[]> rows = BlockingKeys.of(saved.getFullName(), saved.getDob(), saved.getPhone()).stream()
+          .map(key -> new Object[] {key, saved.getId()})
+          .toList();
+      jdbc.batchUpdate("INSERT INTO patient_blocking_keys(block_key, patient_id) VALUES (?, ?)", rows);
+      return saved;
+    });
+  }
+
+  /** Recomputes every key from the patients table; returns the number of patients indexed. */
+  public long rebuild() {
+    return tx.execute(status -> {
+      jdbc.update("DELETE FROM patient_blocking_keys");
+      List<Object[]> batch = new ArrayList<>();
+      long[] count = {0};
+      jdbc.query(con -> {
+        var ps = con.prepareStatement("SELECT id, full_name, dob, phone FROM patients WHERE deleted_at IS NULL");
+        ps.setFetchSize(1000);
+        return ps;
+      }, rs -> {
+        long id = rs.getLong("id");
+        var dob = rs.getObject("dob", LocalDate.class);
+        for (String key : BlockingKeys.of(rs.getString("full_name"), dob, rs.getString("phone"))) {
+          batch.add(new Object[] {key, id});
+        }
+        count[0]++;
+        if (batch.size() >= 1000) {
+          flush(batch);
+        }
+      });
+      flush(batch);
+      return count[0];
+    });
+  }
+
+  // Backfills the index on the first start after the table was introduced. Whether that happened is
+  // recorded with the job's lease: patients registered since startup may already be indexed
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Warmup.BEFORE_WARMUP)
+  public void backfill() {
+    tenants.forEach(() -> {
+      if (!leases.hasRun(BACKFILL_JOB)) {
+        leases.runOnce(BACKFILL_JOB, lease -> {
+          if (!leases.hasRun(BACKFILL_JOB)) {
+            log.info("Indexed {} patients for duplicate detection", rebuild());
+          }
+        });
+      }
+    });
+  }
+
+  private void flush(List<Object[]> batch) {
+    if (!batch.isEmpty()) {
+      jdbc.batchUpdate("INSERT INTO patient_blocking_keys(block_key, patient_id) VALUES (?, ?) ON CONFLICT DO NOTHING", batch);
+      batch.clear();
+    }
+  }
+
+  // Name 0.45, DOB 0.3, phone 0.3; a conflicting DOB counts against the match
+  private static PatientMatch score(Patient p, String name, LocalDate dob, String digits) {
+    double score = 0;
+    List<String> matchedOn = new ArrayList<>();
+    double similarity = nameSimilarity(name, BlockingKeys.normalizeName(p.getFullName()));
+    if (similarity >= 0.85) {
+      score += 0.45 * similarity;
+      matchedOn.add("name");
+    }
+    if (dob != null && p.getDob() != null) {
+      if (dob.equals(p.getDob())) {
+        score += 0.3;
+        matchedOn.add("dob");
+      } else if (dob.getYear() == p.getDob().getYear()
+          && dob.getMonthValue() == p.getDob().getDayOfMonth()
+          && dob.getDayOfMonth() == p.getDob().getMonthValue()) {
+        score += 0.15;
+        matchedOn.add("dob (day/month swapped)");
+      } else {
+        score -= 0.2;
+      }
+    }
+    if (digits != null && digits.equals(BlockingKeys.normalizePhone(p.getPhone()))) {
+      score += 0.3;
+      matchedOn.add("phone");
+    }
+    return new PatientMatch(p, Math.max(0, Math.round(score * 100) / 100.0), matchedOn);
+  }
+
+  // Best Jaro-Winkler similarity of the names as written and with tokens sorted
+  static double nameSimilarity(String a, String b) {
+    if (a.isEmpty() || b.isEmpty()) {
+      return 0;
+    }
+    return Math.max(jaroWinkler(a, b), jaroWinkler(sortTokens(a), sortTokens(b)));
+  }
+
+  private static String sortTokens(String s) {
+    String[] tokens = s.split(" ");
+    Arrays.sort(tokens);
+    return String.join(" ", tokens);
+  }
+
+  static double jaroWinkler(String a, String b) {
+    if (a.equals(b)) {
+      return 1;
+    }
+    int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+    boolean[] aMatched = new boolean[a.length()];
+    boolean[] bMatched = new boolean[b.length()];
+    int matches = 0;
+    for (int i = 0; i < a.length(); i++) {
+      int from = Math.max(0, i - window);
+      int to = Math.min(b.length() - 1, i + window);
+      for (int j = from; j <= to; j++) {
+        if (!bMatched[j] && a.charAt(i) == b.charAt(j)) {
+          aMatched[i] = true;
+          bMatched[j] = true;
+          matches++;
+          break;
+        }
+      }
+    }
+    if (matches == 0) {
+      return 0;
+    }
+    int transpositions = 0;
+    for (int i = 0, j = 0; i < a.length(); i++) {
+      if (aMatched[i]) {
+        while (!bMatched[j]) {
+          j++;
+        }
+        if (a.charAt(i) != b.charAt(j)) {
+          transpositions++;
+        }
+        j++;
+      }
+    }
+    double m = matches;
+    double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+    int prefix = 0;
+    while (prefix < Math.min(4, Math.min(a.length(), b.length())) && a.charAt(prefix) == b.charAt(prefix)) {
+      prefix++;
+    }
+    return jaro + prefix * 0.1 * (1 - jaro);
+  }
+}
@@ -1,11 +1,17 @@
 package com.healthops.patient;
 
+import com.healthops.cache.ResourceVersionListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Entity @Table(name="patients")
+@EntityListeners(ResourceVersionListener.class)
+@SQLRestriction("deleted_at IS NULL")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Patient {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,7 +25,10 @@ public class Patient {
 
   private LocalDate dob;
   private String phone;
-  @Lob
   @Column(columnDefinition = "text")
   private String address;
+
+  // Set on delete; the row itself is removed later by SoftDeletePurger
+  @JsonIgnore
+  private Instant deletedAt;
 }
@@ -0,0 +1,97 @@
+package com.healthops.patient;
+
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out patient codes such as {@code P00001234} followed by a check digit.
+ * Numbers come from {@code patient_code_seq}, reserved {@code block-size} at a
+ * time per clinic, so a code costs one database round trip per block and never
+ * needs a uniqueness lookup or a retry. Numbers left in a block when the node
+ * stops are skipped, which leaves gaps but no duplicates. Codes entered by hand
+ * must not look like generated ones, see {@link #isReserved}.
+ *
+ * <p>The check digit uses the Damm algorithm, which catches every single-digit
+ * typo and every swap of adjacent digits.
+ */
+@Component
+public class PatientCodeAllocator {
+  private static final int[][] DAMM = {
+      {0, 3, 1, 7, 5, 9, 8, 6, 4, 2},
+      {7, 0, 9, 2, 1, 5, 4, 8, 6, 3},
+      {4, 2, 0, 6, 8, 7, 1, 3, 5, 9},
+      {1, 7, 5, 0, 9, 8, 3, 4, 2, 6},
+      {6, 1, 2, 3, 0, 4, 5, 9, 7, 8},
+      {3, 6, 7, 4, 2, 0, 9, 5, 8, 1},
+      {5, 8, 6, 9, 7, 2, 0, 1, 3, 4},
+      {8, 9, 4, 5, 3, 6, 2, 0, 1, 7},
+      {9, 4, 3, 8, 6, 1, 7, 2, 0, 5},
+      {2, 5, 8, 1, 4, 3, 6, 7, 9, 0}};
+
+  private final JdbcTemplate jdbc;
+  private final Tenants tenants;
+  private final String prefix;
+  private final int digits;
+  private final int blockSize;
+  private final Pattern reserved;
+  private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+  public PatientCodeAllocator(JdbcTemplate jdbc, Tenants tenants,
+                              @Value("${patients.codes.prefix:P}") String prefix,
+                              @Value("${patients.codes.digits:7}") int digits,
+                              @Value("${patients.codes.block-size:100}") int blockSize) {
+    this.jdbc = jdbc;
+    this.tenants = tenants;
+    this.prefix = prefix;
+    this.digits = digits;
+    this.blockSize = Math.max(1, blockSize);
+    this.reserved = Pattern.compile(Pattern.quote(prefix) + "\\d{" + (digits + 1) + "}");
+  }
+
+  /** Whether {@code code} has the shape of a generated code; such codes cannot be chosen by hand. */
+  public boolean isReserved(String code) {
+    return code != null && reserved.matcher(code).matches();
+  }
+
+  public String next() {
+    String tenant = TenantContext.current();
+    return format(blocks.computeIfAbsent(tenant != null ? tenant : tenants.defaultTenant(), t -> new Block()).next());
+  }
+
+  String format(long number) {
+    String padded = String.format("%0" + digits + "d", number);
+    return prefix + padded + checkDigit(padded);
+  }
+
+  static int checkDigit(String number) {
+    int interim = 0;
+    for (int i = 0; i < number.length(); i++) {
+      interim = DAMM[interim][number.charAt(i) - '0'];
+    }
+    return interim;
+  }
+
+  private final class Block {
+    private long[] numbers = new long[0];
+    private int next;
+
+    // Runs on the caller's thread, so the reservation goes to the caller's clinic
+    synchronized long next() {
+      if (next == numbers.length) {
+        List<Long> reserved = jdbc.queryForList(
+            "SELECT nextval('patient_code_seq') FROM generate_series(1, ?)", Long.class, blockSize);
+        numbers = reserved.stream().mapToLong(Long::longValue).sorted().toArray();
+        next = 0;
+      }
+      return numbers[next++];
+    }
+  }
+}
@@ -0,0 +1,6 @@
+package com.healthops.patient;
+
+import java.util.List;
+
+/** An existing patient that looks like the one being registered; score is in [0, 1]. */
+public record PatientMatch(Patient patient, double score, List<String> matchedOn) {}
@@ -0,0 +1,173 @@
+package com.healthops.patient;
+
+import com.healthops.jobs.JobLeases;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import com.healthops.warmup.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Maintains the {@code patient_summary} read model: each patient's visit count,
+ * last visit and next scheduled appointment. Writes to visits and appointments
+ * refresh their patient's row once they commit. A refresh recomputes the row
+ * from the per-patient indexes on both tables instead of adjusting it, so
+ * deletes, cancellations and reschedules need no special cases. Rows whose next
+ * appointment has passed are moved on every minute, and {@link #rebuild}
+ * recomputes the whole table, e.g. after rows were changed directly in the
+ * database or partitions were archived. The periodic refresh and the backfill run
+ * on one instance of the cluster, see {@link JobLeases}.
+ */
+@Service
+@Lazy(false)
+public class PatientSummaries {
+  private static final Logger log = LoggerFactory.getLogger(PatientSummaries.class);
+  private static final String BACKFILL_JOB = "patient-summary-backfill";
+
+  private static final String REFRESH_SQL =
+      "UPDATE patient_summary SET " +
+      "visit_count = (SELECT count(*) FROM visits WHERE patient_id = ?), " +
+      "last_visit_at = (SELECT max(visit_at) FROM visits WHERE patient_id = ?), " +
+      "next_appointment_at = (SELECT min(scheduled_at) FROM appointments " +
+      "  WHERE patient_id = ? AND status = 'SCHEDULED' AND scheduled_at > ?) " +
+      "WHERE patient_id = ?";
+  private static final String REBUILD_SQL =
+      "INSERT INTO patient_summary(patient_id, visit_count, last_visit_at, next_appointment_at) " +
+      "SELECT p.id, coalesce(v.visit_count, 0), v.last_visit_at, a.next_appointment_at FROM patients p " +
+      "LEFT JOIN (SELECT patient_id, count(*) AS visit_count, max(visit_at) AS last_visit_at " +
+      "  FROM visits GROUP BY patient_id) v ON v.patient_id = p.id " +
+      "LEFT JOIN (SELECT patient_id, min(scheduled_at) AS next_appointment_at FROM appointments " +
+      "  WHERE status = 'SCHEDULED' AND scheduled_at > ? GROUP BY patient_id) a ON a.patient_id = p.id " +
+      "WHERE v.patient_id IS NOT NULL OR a.patient_id IS NOT NULL";
+  private static final String SELECT_SQL =
+      "SELECT p.id, p.code, p.full_name, p.dob, p.phone, coalesce(s.visit_count, 0) AS visit_count, " +
+      "s.last_visit_at, s.next_appointment_at " +
+      "FROM patients p LEFT JOIN patient_summary s ON s.patient_id = p.id WHERE p.deleted_at IS NULL ";
+
+  private static final RowMapper<PatientSummary> ROW = (rs, i) -> new PatientSummary(
+      rs.getLong("id"), rs.getString("code"), rs.getString("full_name"), rs.getObject("dob", LocalDate.class),
+      rs.getString("phone"), rs.getLong("visit_count"),
+      instant(rs, "last_visit_at"), instant(rs, "next_appointment_at"));
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  // Refreshes run in afterCommit, where joining the finished transaction would leave each statement on its own
+  private final TransactionTemplate refreshTx;
+  private final Tenants tenants;
+  private final JobLeases leases;
+
+  public PatientSummaries(JdbcTemplate jdbc, TransactionTemplate tx, PlatformTransactionManager txManager,
+                          Tenants tenants, JobLeases leases) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.refreshTx = new TransactionTemplate(txManager);
+    this.refreshTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.tenants = tenants;
+    this.leases = leases;
+  }
+
+  /** Patients ordered by name, optionally only those whose name or code contains {@code query}. */
+  public List<PatientSummary> list(String query) {
+    if (query == null || query.isBlank()) {
+      return jdbc.query(SELECT_SQL + "ORDER BY p.full_name, p.id", ROW);
+    }
+    String pattern = "%" + query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    return jdbc.query(SELECT_SQL + "AND (p.full_name ILIKE ? OR p.code ILIKE ?) ORDER BY p.full_name, p.id",
+        ROW, pattern, pattern);
+  }
+
+  public Optional<PatientSummary> find(long patientId) {
+    return jdbc.query(SELECT_SQL + "AND p.id = ?", ROW, patientId).stream().findFirst();
+  }
+
+  /** Refreshes the patient's row once the surrounding transaction commits, or now if there is none. */
+  public void refreshAfterCommit(Long patientId) {
+    if (patientId == null) {
+      return;
+    }
+    String tenant = TenantContext.current();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          TenantContext.runAs(tenant, () -> refresh(patientId));
+        }
+      });
+    } else {
+      refresh(patientId);
+    }
+  }
+
+  public void refresh(long patientId) {
+    Timestamp now = Timestamp.from(Instant.now());
+    refreshTx.executeWithoutResult(status -> {
+      // Locks the row before reading, so concurrent refreshes of one patient take turns
+      // and the last one sees every write that triggered them
+      jdbc.update("INSERT INTO patient_summary(patient_id) SELECT id FROM patients WHERE id = ? " +
+          "ON CONFLICT (patient_id) DO UPDATE SET visit_count = patient_summary.visit_count", patientId);
+      jdbc.update(REFRESH_SQL, patientId, patientId, patientId, now, patientId);
+    });
+  }
+
+  /** Recomputes every row; returns the number of patients with visits or upcoming appointments. */
+  public long rebuild() {
+    Timestamp now = Timestamp.from(Instant.now());
+    return tx.execute(status -> {
+      // Refreshes wait until the new rows are committed; readers keep seeing the old ones
+      jdbc.execute("LOCK TABLE patient_summary IN SHARE ROW EXCLUSIVE MODE");
+      jdbc.update("DELETE FROM patient_summary");
+      return (long) jdbc.update(REBUILD_SQL, now);
+    });
+  }
+
+  @Scheduled(fixedDelayString = "${patients.summary.refresh-interval-ms:60000}")
+  public void refreshDue() {
+    tenants.forEach(() -> leases.runExclusively("patient-summary-refresh", lease -> jdbc.queryForList(
+            "SELECT patient_id FROM patient_summary WHERE next_appointment_at <= ?", Long.class,
+            Timestamp.from(Instant.now()))
+        .forEach(this::refresh)));
+  }
+
+  // Fills the table on the first start after it was introduced. Whether that happened is recorded with
+  // the job's lease: writes since startup may already have added rows, and patients without visits or
+  // appointments get none
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Warmup.BEFORE_WARMUP)
+  public void backfill() {
+    tenants.forEach(() -> {
+      if (!leases.hasRun(BACKFILL_JOB)) {
+        leases.runOnce(BACKFILL_JOB, lease -> {
+          if (!leases.hasRun(BACKFILL_JOB)) {
+            log.info("Summarised {} patients", rebuild());
+          }
+        });
+      }
+    });
+  }
+
+  private static Instant instant(ResultSet rs, String column) throws SQLException {
+    Timestamp ts = rs.getTimestamp(column);
+    return ts != null ? ts.toInstant() : null;
+  }
+}
@@ -0,0 +1,8 @@
+package com.healthops.patient;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/** A patient with the figures kept in {@code patient_summary}. */
+public record PatientSummary(Long id, String code, String fullName, LocalDate dob, String phone,
+                             long visitCount, Instant lastVisitAt, Instant nextAppointmentAt) {}
@@ -0,0 +1,41 @@
+package com.healthops.patient;
+
+import com.healthops.appointment.Appointment;
+import com.healthops.visit.Visit;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+
+// Refreshes the patient_summary row of the patient whose visit or appointment changed.
+// Injected lazily because the summaries need the transaction manager, which needs the entity manager factory.
+public class PatientSummaryListener {
+  private final PatientSummaries summaries;
+
+  public PatientSummaryListener(@Lazy PatientSummaries summaries) {
+    this.summaries = summaries;
+  }
+
+  @PostPersist @PostRemove
+  public void onInsertOrDelete(Object entity) {
+    summaries.refreshAfterCommit(patientId(entity));
+  }
+
+  // Visit edits only touch notes, diagnosis and prescription
+  @PostUpdate
+  public void onUpdate(Object entity) {
+    if (entity instanceof Appointment) {
+      summaries.refreshAfterCommit(patientId(entity));
+    }
+  }
+
+  private static Long patientId(Object entity) {
+    Patient patient = null;
+    if (entity instanceof Appointment a) {
+      patient = a.getPatient();
+    } else if (entity instanceof Visit v) {
+      patient = v.getPatient();
+    }
+    return patient != null ? patient.getId() : null;
+  }
+}
@@ -0,0 +1,4 @@
+package com.healthops.profiling;
+
+/** Sampled allocations attributed to the innermost application frame; bytes is the samples' estimated weight. */
+public record AllocationSite(String frame, long samples, long bytes) {}
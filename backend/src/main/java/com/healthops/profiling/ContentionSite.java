@@ -0,0 +1,8 @@
+package com.healthops.profiling;
+
+/**
+ * Threads that blocked entering a monitor ({@code monitor}) or parked on a
+ * java.util.concurrent lock ({@code park}) at an application frame, longer
+ * than the recording's threshold.
+ */
+public record ContentionSite(String frame, String kind, String lockClass, long events, long totalMillis) {}
@@ -0,0 +1,8 @@
+package com.healthops.profiling;
+
+import java.time.Instant;
+import java.util.List;
+
+/** The hottest allocation and contention sites of a recording, most bytes or blocked time first. */
+public record ProfileSummary(Instant start, Instant end, List<AllocationSite> allocations,
+                             List<ContentionSite> contention) {}
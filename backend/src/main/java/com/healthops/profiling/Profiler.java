@@ -0,0 +1,221 @@
+package com.healthops.profiling;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Flight Recorder sessions for diagnosing production latency without a
+ * restart. A continuous recording with the low-overhead {@code default} settings
+ * keeps the last {@code profiling.continuous.max-age} on disk and can be dumped at
+ * any time; on-demand recordings use a chosen settings profile ({@code default} or
+ * the more detailed {@code profile}) for at most {@code profiling.max-duration},
+ * one at a time. {@link #summarize} condenses a recording into the allocation and
+ * lock contention sites of the {@code profiling.packages} classes.
+ */
+@Component
+@Lazy(false)
+public class Profiler {
+  private static final Logger log = LoggerFactory.getLogger(Profiler.class);
+
+  private final Duration maxDuration;
+  private final List<String> packages;
+  private final Semaphore onDemand = new Semaphore(1);
+  private final Recording continuous;
+
+  public Profiler(@Value("${profiling.continuous.enabled:true}") boolean continuousEnabled,
+                  @Value("${profiling.continuous.max-age:30m}") Duration maxAge,
+                  @Value("${profiling.continuous.max-size:100MB}") DataSize maxSize,
+                  @Value("${profiling.max-duration:5m}") Duration maxDuration,
+                  @Value("${profiling.packages:com.healthops}") List<String> packages) {
+    this.maxDuration = maxDuration;
+    this.packages = packages.stream().map(p -> p.endsWith(".") ? p : p + ".").toList();
+    this.continuous = continuousEnabled ? startContinuous(maxAge, maxSize) : null;
+  }
+
+  public boolean isContinuous() {
+    return continuous != null;
+  }
+
+  /** Copies what the continuous recording holds into a new file, which the caller deletes. */
+  public Path dumpContinuous() throws IOException {
+    if (continuous == null) {
+      throw new IllegalStateException("The continuous recording is disabled");
+    }
+    Path file = Files.createTempFile("healthops-continuous-", ".jfr");
+    continuous.dump(file);
+    return file;
+  }
+
+  /**
+   * Starts an on-demand recording with the named settings; hand it to {@link #finish}.
+   * Throws IllegalArgumentException for an unknown profile or a duration that is not
+   * positive or longer than the maximum, and IllegalStateException while another
+   * on-demand recording is running.
+   */
+  public Recording start(String profile, Duration duration) {
+    if (duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0) {
+      throw new IllegalArgumentException("duration must be positive and at most " + maxDuration);
+    }
+    Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration(profile);
+    } catch (IOException | ParseException e) {
+      throw new IllegalArgumentException("Unknown profile " + profile + "; use default or profile");
+    }
+    if (!onDemand.tryAcquire()) {
+      throw new IllegalStateException("Another recording is running");
+    }
+    try {
+      Recording recording = new Recording(configuration);
+      recording.setName("healthops-" + profile);
+      recording.setDuration(duration);
+      recording.setToDisk(true);
+      recording.start();
+      log.info("Started a {} flight recording for {}", profile, duration);
+      return recording;
+    } catch (RuntimeException e) {
+      onDemand.release();
+      throw e;
+    }
+  }
+
+  /** Waits for the recording to end and writes it to a new file, which the caller deletes. */
+  public Path finish(Recording recording) throws IOException {
+    try {
+      Instant end = recording.getStartTime().plus(recording.getDuration());
+      while (recording.getState() == RecordingState.RUNNING && Instant.now().isBefore(end)) {
+        TimeUnit.MILLISECONDS.sleep(Math.max(1, Math.min(1000, Duration.between(Instant.now(), end).toMillis())));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (recording.getState() == RecordingState.RUNNING) {
+        recording.stop();
+      }
+      Path file = Files.createTempFile("healthops-" + recording.getName() + "-", ".jfr");
+      recording.dump(file);
+      return file;
+    } finally {
+      recording.close();
+      onDemand.release();
+    }
+  }
+
+  /** The {@code top} allocation and contention sites in application code of the recording in {@code file}. */
+  public ProfileSummary summarize(Path file, int top) throws IOException {
+    Map<String, long[]> allocations = new HashMap<>();
+    Map<List<String>, long[]> contention = new HashMap<>();
+    Instant start = null;
+    Instant end = null;
+    try (RecordingFile events = new RecordingFile(file)) {
+      while (events.hasMoreEvents()) {
+        RecordedEvent event = events.readEvent();
+        start = start == null || event.getStartTime().isBefore(start) ? event.getStartTime() : start;
+        end = end == null || event.getEndTime().isAfter(end) ? event.getEndTime() : end;
+        switch (event.getEventType().getName()) {
+          case "jdk.ObjectAllocationSample" -> {
+            String frame = applicationFrame(event.getStackTrace());
+            if (frame != null) {
+              long[] site = allocations.computeIfAbsent(frame, f -> new long[2]);
+              site[0]++;
+              site[1] += event.getLong("weight");
+            }
+          }
+          case "jdk.JavaMonitorEnter" -> contended(contention, event, "monitor", "monitorClass");
+          case "jdk.ThreadPark" -> contended(contention, event, "park", "parkedClass");
+          default -> { }
+        }
+      }
+    }
+    List<AllocationSite> allocationSites = allocations.entrySet().stream()
+        .map(e -> new AllocationSite(e.getKey(), e.getValue()[0], e.getValue()[1]))
+        .sorted(Comparator.comparingLong(AllocationSite::bytes).reversed())
+        .limit(top)
+        .toList();
+    List<ContentionSite> contentionSites = contention.entrySet().stream()
+        .map(e -> new ContentionSite(e.getKey().get(0), e.getKey().get(1), e.getKey().get(2),
+            e.getValue()[0], TimeUnit.NANOSECONDS.toMillis(e.getValue()[1])))
+        .sorted(Comparator.comparingLong(ContentionSite::totalMillis).reversed())
+        .limit(top)
+        .toList();
+    return new ProfileSummary(start, end, allocationSites, contentionSites);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (continuous != null) {
+      continuous.close();
+    }
+  }
+
+  private void contended(Map<List<String>, long[]> contention, RecordedEvent event, String kind, String classField) {
+    String frame = applicationFrame(event.getStackTrace());
+    if (frame == null) {
+      return;
+    }
+    var lockClass = event.getClass(classField);
+    long[] site = contention.computeIfAbsent(List.of(frame, kind, lockClass != null ? lockClass.getName() : "?"),
+        k -> new long[2]);
+    site[0]++;
+    site[1] += event.getDuration().toNanos();
+  }
+
+  // The innermost frame in application code, so time spent in libraries counts against their caller
+  private String applicationFrame(RecordedStackTrace stackTrace) {
+    if (stackTrace == null) {
+      return null;
+    }
+    for (RecordedFrame frame : stackTrace.getFrames()) {
+      if (!frame.isJavaFrame()) {
+        continue;
+      }
+      String type = frame.getMethod().getType().getName();
+      if (packages.stream().anyMatch(type::startsWith) && !type.startsWith(Profiler.class.getPackageName() + ".")) {
+        return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+      }
+    }
+    return null;
+  }
+
+  private static Recording startContinuous(Duration maxAge, DataSize maxSize) {
+    try {
+      Recording recording = new Recording(Configuration.getConfiguration("default"));
+      recording.setName("healthops-continuous");
+      recording.setMaxAge(maxAge);
+      recording.setMaxSize(maxSize.toBytes());
+      recording.setToDisk(true);
+      recording.start();
+      log.info("Continuous flight recording keeps the last {}", maxAge);
+      return recording;
+    } catch (IOException | ParseException | RuntimeException e) {
+      log.warn("Could not start the continuous flight recording", e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.healthops.purge;
+
+import com.healthops.analytics.CountedVisit;
+import com.healthops.analytics.TermCounts;
+import com.healthops.jobs.JobLeases;
+import com.healthops.jobs.Lease;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Removes soft-deleted patients and doctors off-peak. Their appointments and
+ * visits are deleted, or for doctors detached, {@code purge.batch-size} rows per
+ * statement with a pause in between, each statement in its own transaction, so
+ * no lock on the hot tables is held for long. A run stops after
+ * {@code purge.max-duration}; whatever is left is picked up by the next run.
+ * Only the instance holding the {@code soft-delete-purge} lease runs it, and each
+ * statement checks the lease's fencing token first. Removed and detached visits
+ * are taken out of the {@link TermCounts} in the same transaction.
+ */
+@Component
+@Lazy(false)
+public class SoftDeletePurger {
+  private static final Logger log = LoggerFactory.getLogger(SoftDeletePurger.class);
+
+  // Both return what the term counts of the changed visits were based on
+  private static final String DELETE_VISITS_SQL =
+      "DELETE FROM visits WHERE id IN (SELECT id FROM visits WHERE patient_id = ? LIMIT ?) " +
+      "RETURNING doctor_id, visit_at, diagnosis, prescription";
+  private static final String DETACH_VISITS_SQL =
+      "WITH batch AS (SELECT id, visit_at, doctor_id, diagnosis, prescription FROM visits WHERE doctor_id = ? LIMIT ?) " +
+      "UPDATE visits v SET doctor_id = NULL FROM batch WHERE v.id = batch.id AND v.visit_at = batch.visit_at " +
+      "RETURNING batch.doctor_id, batch.visit_at, batch.diagnosis, batch.prescription";
+  private static final RowMapper<CountedVisit> COUNTED_VISIT = (rs, i) -> new CountedVisit(
+      rs.getObject("doctor_id", Long.class), rs.getTimestamp("visit_at").toInstant(),
+      rs.getString("diagnosis"), rs.getString("prescription"));
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final Tenants tenants;
+  private final JobLeases leases;
+  private final TermCounts termCounts;
+  private final int batchSize;
+  private final long pauseMillis;
+  private final Duration maxDuration;
+
+  public SoftDeletePurger(JdbcTemplate jdbc, TransactionTemplate tx, Tenants tenants, JobLeases leases,
+                          TermCounts termCounts,
+                          @Value("${purge.batch-size:500}") int batchSize,
+                          @Value("${purge.pause-ms:100}") long pauseMillis,
+                          @Value("${purge.max-duration:PT2H}") Duration maxDuration) {
+    this.jdbc = jdbc;
+    this.tx = tx;
+    this.tenants = tenants;
+    this.leases = leases;
+    this.termCounts = termCounts;
+    this.batchSize = batchSize;
+    this.pauseMillis = pauseMillis;
+    this.maxDuration = maxDuration;
+  }
+
+  @Scheduled(cron = "${purge.cron:0 0 3 * * *}")
+  public void run() {
+    Instant deadline = Instant.now().plus(maxDuration);
+    tenants.forEach(() -> leases.runExclusively("soft-delete-purge", lease -> {
+      int patients = 0;
+      int doctors = 0;
+      for (Long id : deleted("patients")) {
+        if (!purgePatient(lease, id, deadline)) {
+          break;
+        }
+        patients++;
+      }
+      for (Long id : deleted("doctors")) {
+        if (!purgeDoctor(lease, id, deadline)) {
+          break;
+        }
+        doctors++;
+      }
+      if (patients + doctors > 0) {
+        log.info("Purged {} patients and {} doctors of tenant {}", patients, doctors, TenantContext.current());
+      }
+    }));
+  }
+
+  // Returns false if the run ran out of time before the patient was gone
+  private boolean purgePatient(Lease lease, long id, Instant deadline) {
+    if (!drainVisits(lease, DELETE_VISITS_SQL, id, deadline)
+        || !drain(lease, "DELETE FROM appointments WHERE id IN (SELECT id FROM appointments WHERE patient_id = ? LIMIT ?)", id, deadline)) {
+      return false;
+    }
+    // Only the duplicate-detection keys are left to cascade
+    fenced(lease, "DELETE FROM patients WHERE id = ? AND deleted_at IS NOT NULL", id);
+    return true;
+  }
+
+  // Same effect as the ON DELETE SET NULL / CASCADE a hard delete would have had
+  private boolean purgeDoctor(Lease lease, long id, Instant deadline) {
+    if (!drainVisits(lease, DETACH_VISITS_SQL, id, deadline)
+        || !drain(lease, "UPDATE appointments SET doctor_id = NULL WHERE id IN (SELECT id FROM appointments WHERE doctor_id = ? LIMIT ?)", id, deadline)
+        || !drain(lease, "DELETE FROM availability WHERE id IN (SELECT id FROM availability WHERE doctor_id = ? LIMIT ?)", id, deadline)
+        || !drain(lease, "DELETE FROM holidays WHERE id IN (SELECT id FROM holidays WHERE doctor_id = ? LIMIT ?)", id, deadline)) {
+      return false;
+    }
+    fenced(lease, "DELETE FROM doctors WHERE id = ? AND deleted_at IS NOT NULL", id);
+    return true;
+  }
+
+  private List<Long> deleted(String table) {
+    return jdbc.queryForList("SELECT id FROM " + table + " WHERE deleted_at IS NOT NULL ORDER BY id", Long.class);
+  }
+
+  private boolean drain(Lease lease, String sql, long id, Instant deadline) {
+    return drain(() -> fenced(lease, sql, id, batchSize), deadline);
+  }
+
+  // Takes the batch's visits out of the term counts in the same transaction
+  private boolean drainVisits(Lease lease, String sql, long id, Instant deadline) {
+    return drain(() -> tx.execute(status -> {
+      lease.checkFence();
+      List<CountedVisit> visits = jdbc.query(sql, COUNTED_VISIT, id, batchSize);
+      termCounts.removed(visits);
+      return visits.size();
+    }), deadline);
+  }
+
+  // Repeats the batch until it touches fewer rows than a full batch
+  private boolean drain(IntSupplier batch, Instant deadline) {
+    while (Instant.now().isBefore(deadline)) {
+      if (batch.getAsInt() < batchSize) {
+        return true;
+      }
+      try {
+        Thread.sleep(pauseMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private int fenced(Lease lease, String sql, Object... args) {
+    return tx.execute(status -> {
+      lease.checkFence();
+      return jdbc.update(sql, args);
+    });
+  }
+}
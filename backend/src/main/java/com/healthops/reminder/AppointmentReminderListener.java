@@ -0,0 +1,56 @@
+package com.healthops.reminder;
+
+import com.healthops.appointment.Appointment;
+import com.healthops.tenant.TenantContext;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+// Keeps the reminder wheel in step with bookings, reschedules, status changes and deletes.
+// The scheduler is injected lazily because it needs the transaction manager, which needs the entity manager factory.
+public class AppointmentReminderListener {
+  private final ReminderScheduler reminders;
+
+  public AppointmentReminderListener(@Lazy ReminderScheduler reminders) {
+    this.reminders = reminders;
+  }
+
+  @PostPersist @PostUpdate
+  public void onSave(Appointment a) {
+    Long id = a.getId();
+    boolean pending = "SCHEDULED".equals(a.getStatus()) && a.getScheduledAt() != null;
+    var scheduledAt = a.getScheduledAt();
+    afterCommit(tenant -> {
+      if (pending) {
+        reminders.schedule(tenant, id, scheduledAt);
+      } else {
+        reminders.cancel(tenant, id);
+      }
+    });
+  }
+
+  @PostRemove
+  public void onRemove(Appointment a) {
+    Long id = a.getId();
+    afterCommit(tenant -> reminders.cancel(tenant, id));
+  }
+
+  private static void afterCommit(Consumer<String> action) {
+    String tenant = TenantContext.current();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.accept(tenant);
+        }
+      });
+    } else {
+      action.accept(tenant);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.healthops.reminder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Local sink for development and testing: logs each reminder and, if reminders.log-file is set, appends it there as a JSON line
+@Component
+@ConditionalOnProperty(name = "reminders.sink", havingValue = "log", matchIfMissing = true)
+public class LogReminderSink implements ReminderSink {
+  private static final Logger log = LoggerFactory.getLogger(LogReminderSink.class);
+
+  private final ObjectMapper mapper;
+  private final Path file;
+
+  public LogReminderSink(ObjectMapper mapper, @Value("${reminders.log-file:}") String file) {
+    this.mapper = mapper;
+    this.file = file.isBlank() ? null : Path.of(file);
+  }
+
+  @Override
+  public void send(Reminder reminder) {
+    log.info("Reminder for appointment {} at {} ({}, tenant {})",
+        reminder.appointmentId(), reminder.scheduledAt(), reminder.patientName(), reminder.tenant());
+    if (file == null) {
+      return;
+    }
+    try {
+      String line = mapper.writeValueAsString(reminder) + "\n";
+      synchronized (this) {
+        Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package com.healthops.reminder;
+
+import java.time.Instant;
+
+// What a sink needs to remind a patient of an upcoming appointment
+public record Reminder(String tenant, Long appointmentId, Instant scheduledAt,
+                       String patientName, String patientPhone, String doctorName) {}
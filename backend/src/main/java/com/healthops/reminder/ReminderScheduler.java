@@ -0,0 +1,266 @@
+package com.healthops.reminder;
+
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends appointment reminders {@code reminders.lead} before each appointment.
+ * Appointments whose reminder falls within {@code reminders.horizon} are held in
+ * a {@link TimingWheel}; the horizon is extended every refresh by loading only
+ * the newly covered slice, and bookings, reschedules and cancellations update
+ * the wheel as they commit, so the appointments table is never polled for due
+ * rows. A due reminder is claimed in the database before it goes to the
+ * {@link ReminderSink}, which makes the claim the source of truth: it skips
+ * appointments that were cancelled, moved or deleted on another instance, and sends each
+ * reminder once even when several instances hold the same timer.
+ */
+@Component
+@Lazy(false)
+public class ReminderScheduler {
+  private static final Logger log = LoggerFactory.getLogger(ReminderScheduler.class);
+
+  private static final int MAX_ATTEMPTS = 5;
+  private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+  private static final int LOAD_BATCH = 1000;
+
+  private static final String CLAIM_SQL =
+      "WITH claimed AS (" +
+      "  UPDATE appointments SET reminded_for = scheduled_at " +
+      "  WHERE id = ? AND scheduled_at = ? AND status = 'SCHEDULED' AND reminded_for IS DISTINCT FROM scheduled_at " +
+      "  AND NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = patient_id AND p.deleted_at IS NOT NULL) " +
+      "  AND NOT EXISTS (SELECT 1 FROM doctors d WHERE d.id = doctor_id AND d.deleted_at IS NOT NULL) " +
+      "  RETURNING id, patient_id, doctor_id, scheduled_at) " +
+      "SELECT c.id, c.scheduled_at, p.full_name AS patient_name, p.phone AS patient_phone, u.full_name AS doctor_name " +
+      "FROM claimed c LEFT JOIN patients p ON p.id = c.patient_id " +
+      "LEFT JOIN doctors d ON d.id = c.doctor_id LEFT JOIN users u ON u.id = d.user_id";
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final TransactionTemplate readOnlyTx;
+  private final Tenants tenants;
+  private final ReminderSink sink;
+  private final boolean enabled;
+  private final Duration lead;
+  private final Duration horizon;
+
+  // Everything below is guarded by the wheel's monitor
+  private final TimingWheel<ReminderTimer> wheel = new TimingWheel<>(Instant.now().getEpochSecond());
+  private final Map<String, Map<Long, ReminderTimer>> timers = new HashMap<>();
+  private final Map<String, Instant> loadedUntil = new HashMap<>();
+
+  private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "reminder-dispatch");
+    t.setDaemon(true);
+    return t;
+  });
+
+  public ReminderScheduler(JdbcTemplate jdbc, PlatformTransactionManager txManager, Tenants tenants,
+                           ReminderSink sink, MeterRegistry registry,
+                           @Value("${reminders.enabled:true}") boolean enabled,
+                           @Value("${reminders.lead:PT24H}") Duration lead,
+                           @Value("${reminders.horizon:PT48H}") Duration horizon) {
+    this.jdbc = jdbc;
+    this.tx = new TransactionTemplate(txManager);
+    this.readOnlyTx = new TransactionTemplate(txManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.tenants = tenants;
+    this.sink = sink;
+    this.enabled = enabled;
+    this.lead = lead;
+    this.horizon = horizon;
+    Gauge.builder("healthops.reminders.pending", this, ReminderScheduler::pending)
+        .description("Reminders waiting in the timing wheel")
+        .register(registry);
+  }
+
+  /** Adds or moves the reminder of a booked appointment; a no-op if it lies beyond the loaded horizon. */
+  public void schedule(String tenant, long appointmentId, Instant scheduledAt) {
+    if (!enabled) {
+      return;
+    }
+    String t = tenant != null ? tenant : tenants.defaultTenant();
+    Instant remindAt = scheduledAt.minus(lead);
+    ReminderTimer due = null;
+    synchronized (wheel) {
+      Instant until = loadedUntil.get(t);
+      if (until == null || remindAt.isAfter(until) || !scheduledAt.isAfter(Instant.now())) {
+        // The refresh that covers remindAt will load it from the database
+        remove(t, appointmentId);
+        return;
+      }
+      ReminderTimer timer = timers.computeIfAbsent(t, k -> new HashMap<>())
+          .computeIfAbsent(appointmentId, id -> new ReminderTimer(t, id, scheduledAt));
+      timer.scheduledAt = scheduledAt;
+      timer.attempts = 0;
+      if (!wheel.add(timer, deadline(remindAt))) {
+        timers.get(t).remove(appointmentId);
+        due = timer;
+      }
+    }
+    if (due != null) {
+      dispatch(List.of(due));
+    }
+  }
+
+  public void cancel(String tenant, long appointmentId) {
+    synchronized (wheel) {
+      remove(tenant != null ? tenant : tenants.defaultTenant(), appointmentId);
+    }
+  }
+
+  public int pending() {
+    synchronized (wheel) {
+      return wheel.size();
+    }
+  }
+
+  @Scheduled(fixedRate = 1000)
+  public void tick() {
+    List<ReminderTimer> due = new ArrayList<>();
+    synchronized (wheel) {
+      wheel.advanceTo(Instant.now().getEpochSecond(), timer -> {
+        timers.get(timer.tenant).remove(timer.appointmentId);
+        due.add(timer);
+      });
+    }
+    dispatch(due);
+  }
+
+  // Also runs once right after startup, which loads the first horizon
+  @Scheduled(fixedDelayString = "${reminders.refresh-interval-ms:600000}")
+  public void refresh() {
+    if (enabled) {
+      tenants.forEach(this::extendHorizon);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    dispatcher.shutdownNow();
+  }
+
+  private void extendHorizon() {
+    String tenant = TenantContext.current();
+    Instant now = Instant.now();
+    Instant until = now.plus(horizon);
+    Instant from;
+    // Advance the bound before reading, so bookings committed during the load are scheduled by the listener
+    synchronized (wheel) {
+      from = loadedUntil.get(tenant);
+      loadedUntil.put(tenant, until);
+    }
+    Instant lower = from == null || from.plus(lead).isBefore(now) ? now : from.plus(lead);
+    List<ReminderTimer> batch = new ArrayList<>();
+    List<ReminderTimer> due = new ArrayList<>();
+    readOnlyTx.executeWithoutResult(status -> jdbc.query(con -> {
+      var ps = con.prepareStatement(
+          "SELECT id, scheduled_at FROM appointments " +
+          "WHERE status = 'SCHEDULED' AND scheduled_at > ? AND scheduled_at <= ? " +
+          "AND reminded_for IS DISTINCT FROM scheduled_at");
+      ps.setTimestamp(1, Timestamp.from(lower));
+      ps.setTimestamp(2, Timestamp.from(until.plus(lead)));
+      ps.setFetchSize(LOAD_BATCH);
+      return ps;
+    }, rs -> {
+      batch.add(new ReminderTimer(tenant, rs.getLong("id"), rs.getTimestamp("scheduled_at").toInstant()));
+      if (batch.size() >= LOAD_BATCH) {
+        addLoaded(batch, due);
+      }
+    }));
+    addLoaded(batch, due);
+    dispatch(due);
+  }
+
+  // Entries already present came from the listener and are at least as recent as this read
+  private void addLoaded(List<ReminderTimer> batch, List<ReminderTimer> due) {
+    synchronized (wheel) {
+      for (ReminderTimer timer : batch) {
+        var forTenant = timers.computeIfAbsent(timer.tenant, k -> new HashMap<>());
+        if (forTenant.putIfAbsent(timer.appointmentId, timer) == null
+            && !wheel.add(timer, deadline(timer.scheduledAt.minus(lead)))) {
+          forTenant.remove(timer.appointmentId);
+          due.add(timer);
+        }
+      }
+    }
+    batch.clear();
+  }
+
+  private void remove(String tenant, long appointmentId) {
+    var forTenant = timers.get(tenant);
+    ReminderTimer timer = forTenant != null ? forTenant.remove(appointmentId) : null;
+    if (timer != null) {
+      wheel.remove(timer);
+    }
+  }
+
+  private void dispatch(List<ReminderTimer> due) {
+    for (ReminderTimer timer : due) {
+      try {
+        dispatcher.execute(() -> TenantContext.runAs(timer.tenant, () -> deliver(timer)));
+      } catch (RejectedExecutionException e) {
+        return;
+      }
+    }
+  }
+
+  private void deliver(ReminderTimer timer) {
+    try {
+      tx.executeWithoutResult(status -> {
+        List<Reminder> claimed = jdbc.query(CLAIM_SQL, (rs, i) -> new Reminder(timer.tenant,
+                rs.getLong("id"), rs.getTimestamp("scheduled_at").toInstant(),
+                rs.getString("patient_name"), rs.getString("patient_phone"), rs.getString("doctor_name")),
+            timer.appointmentId, Timestamp.from(timer.scheduledAt));
+        // Nothing claimed: cancelled, moved, or already sent by another instance
+        if (!claimed.isEmpty()) {
+          sink.send(claimed.get(0));
+        }
+      });
+    } catch (RuntimeException e) {
+      log.warn("Reminder for appointment {} (tenant {}) failed on attempt {}",
+          timer.appointmentId, timer.tenant, timer.attempts + 1, e);
+      retry(timer);
+    }
+  }
+
+  private void retry(ReminderTimer timer) {
+    Instant next = Instant.now().plus(RETRY_DELAY.multipliedBy(timer.attempts + 1));
+    if (++timer.attempts >= MAX_ATTEMPTS || !next.isBefore(timer.scheduledAt)) {
+      return;
+    }
+    synchronized (wheel) {
+      // A reschedule that arrived meanwhile has its own timer
+      if (timers.computeIfAbsent(timer.tenant, k -> new HashMap<>()).putIfAbsent(timer.appointmentId, timer) == null) {
+        wheel.add(timer, deadline(next));
+      }
+    }
+  }
+
+  // Rounded up, so a reminder never fires before its time
+  private static long deadline(Instant at) {
+    return at.getEpochSecond() + (at.getNano() > 0 ? 1 : 0);
+  }
+}
@@ -0,0 +1,10 @@
+package com.healthops.reminder;
+
+/**
+ * Delivers due reminders, e.g. by SMS or e-mail. Exactly one sink is active,
+ * chosen with {@code reminders.sink}. A sink that throws leaves the reminder
+ * unsent, and it is retried a few times while the appointment is still ahead.
+ */
+public interface ReminderSink {
+  void send(Reminder reminder);
+}
@@ -0,0 +1,17 @@
+package com.healthops.reminder;
+
+import java.time.Instant;
+
+// One pending reminder; the wheel links it in place, so it is the only allocation per appointment
+final class ReminderTimer extends TimingWheel.Entry {
+  final String tenant;
+  final long appointmentId;
+  Instant scheduledAt;
+  int attempts;
+
+  ReminderTimer(String tenant, long appointmentId, Instant scheduledAt) {
+    this.tenant = tenant;
+    this.appointmentId = appointmentId;
+    this.scheduledAt = scheduledAt;
+  }
+}
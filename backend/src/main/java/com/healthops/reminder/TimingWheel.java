@@ -0,0 +1,149 @@
+package com.healthops.reminder;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel with four levels of 64 slots. With one-second ticks,
+ * level 0 covers about a minute, level 3 about 194 days, and deadlines further
+ * out wait in an overflow list. Entries are intrusive list nodes, so adding,
+ * removing and expiring an entry is O(1) and takes no memory beyond the entry.
+ * Not thread-safe; callers synchronize.
+ */
+final class TimingWheel<E extends TimingWheel.Entry> {
+  private static final int BITS = 6;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+  private static final int OVERFLOW = LEVELS * SLOTS;
+  private static final int UNLINKED = -1;
+
+  /** A timer linked into one slot of the wheel. */
+  static class Entry {
+    long deadline;
+    int slot = UNLINKED;
+    Entry prev;
+    Entry next;
+
+    boolean isScheduled() {
+      return slot != UNLINKED;
+    }
+  }
+
+  private final Entry[] heads = new Entry[OVERFLOW + 1];
+  private long tick;
+  private int size;
+
+  TimingWheel(long startTick) {
+    this.tick = startTick;
+  }
+
+  long currentTick() {
+    return tick;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Links the entry at {@code deadline}; returns false if that tick has already passed. */
+  boolean add(E entry, long deadline) {
+    if (entry.isScheduled()) {
+      remove(entry);
+    }
+    if (deadline <= tick) {
+      return false;
+    }
+    entry.deadline = deadline;
+    link(entry, slotFor(deadline));
+    size++;
+    return true;
+  }
+
+  void remove(E entry) {
+    if (entry.isScheduled()) {
+      unlink(entry);
+      size--;
+    }
+  }
+
+  /** Advances to {@code now}, handing every entry whose deadline was reached to {@code expired}. */
+  @SuppressWarnings("unchecked")
+  void advanceTo(long now, Consumer<E> expired) {
+    if (size == 0 && now > tick) {
+      tick = now;
+      return;
+    }
+    while (tick < now) {
+      tick++;
+      if ((tick & ((1L << (BITS * LEVELS)) - 1)) == 0) {
+        cascade(OVERFLOW);
+      }
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+          cascade(level * SLOTS + (int) ((tick >>> (BITS * level)) & MASK));
+        }
+      }
+      Entry e = detach((int) (tick & MASK));
+      while (e != null) {
+        Entry next = e.next;
+        e.prev = e.next = null;
+        e.slot = UNLINKED;
+        size--;
+        expired.accept((E) e);
+        e = next;
+      }
+    }
+  }
+
+  // An entry sits at the lowest level whose enclosing window it shares with the current tick,
+  // so it is cascaded down before that window ends and never lands in a slot that has passed
+  private int slotFor(long deadline) {
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = BITS * (level + 1);
+      if ((deadline >>> shift) == (tick >>> shift)) {
+        return level * SLOTS + (int) ((deadline >>> (BITS * level)) & MASK);
+      }
+    }
+    return OVERFLOW;
+  }
+
+  private void cascade(int slot) {
+    Entry e = detach(slot);
+    while (e != null) {
+      Entry next = e.next;
+      e.prev = e.next = null;
+      link(e, slotFor(e.deadline));
+      e = next;
+    }
+  }
+
+  private Entry detach(int slot) {
+    Entry head = heads[slot];
+    heads[slot] = null;
+    return head;
+  }
+
+  private void link(Entry e, int slot) {
+    Entry head = heads[slot];
+    e.slot = slot;
+    e.prev = null;
+    e.next = head;
+    if (head != null) {
+      head.prev = e;
+    }
+    heads[slot] = e;
+  }
+
+  private void unlink(Entry e) {
+    if (e.prev != null) {
+      e.prev.next = e.next;
+    } else {
+      heads[e.slot] = e.next;
+    }
+    if (e.next != null) {
+      e.next.prev = e.prev;
+    }
+    e.prev = e.next = null;
+    e.slot = UNLINKED;
+  }
+}
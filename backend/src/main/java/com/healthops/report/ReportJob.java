@@ -0,0 +1,91 @@
+package com.healthops.report;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** State of one background report; updated by the worker thread and read by pollers. */
+public class ReportJob {
+  public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+  private final String id;
+  private final String tenant;
+  private final ReportType type;
+  private final Long subjectId;
+  private final String owner;
+  private final Instant createdAt = Instant.now();
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final Path file;
+
+  private volatile Status status = Status.QUEUED;
+  private volatile long totalRows = -1;
+  private volatile long sizeBytes;
+  private volatile Instant finishedAt;
+  private volatile Instant expiresAt;
+  private volatile String error;
+  private volatile Future<?> future;
+
+  ReportJob(String id, String tenant, ReportType type, Long subjectId, String owner, Path file) {
+    this.id = id;
+    this.tenant = tenant;
+    this.type = type;
+    this.subjectId = subjectId;
+    this.owner = owner;
+    this.file = file;
+  }
+
+  public String getId() { return id; }
+  public ReportType getType() { return type; }
+  public Long getSubjectId() { return subjectId; }
+  public String getOwner() { return owner; }
+  public Status getStatus() { return status; }
+  public Instant getCreatedAt() { return createdAt; }
+  public Instant getFinishedAt() { return finishedAt; }
+  public Instant getExpiresAt() { return expiresAt; }
+  public String getError() { return error; }
+  public long getRowsWritten() { return rowsWritten.get(); }
+  public long getTotalRows() { return totalRows; }
+  public long getSizeBytes() { return sizeBytes; }
+  public String getFileName() { return type.fileName(subjectId); }
+
+  /** Percentage of rows written, or null while the row count is not known yet. */
+  public Integer getProgress() {
+    if (status == Status.COMPLETED) {
+      return 100;
+    }
+    long total = totalRows;
+    if (total < 0) {
+      return null;
+    }
+    return total == 0 ? 0 : (int) Math.min(99, rowsWritten.get() * 100 / total);
+  }
+
+  @JsonIgnore
+  public String getTenant() { return tenant; }
+
+  @JsonIgnore
+  public Path getFile() { return file; }
+
+  @JsonIgnore
+  public boolean isFinished() {
+    return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+  }
+
+  AtomicLong rowCounter() { return rowsWritten; }
+  Future<?> future() { return future; }
+
+  void setFuture(Future<?> future) { this.future = future; }
+  void setStatus(Status status) { this.status = status; }
+  void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+
+  void finish(Status status, long sizeBytes, String error, Instant expiresAt) {
+    this.sizeBytes = sizeBytes;
+    this.error = error;
+    this.finishedAt = Instant.now();
+    this.expiresAt = expiresAt;
+    this.status = status;
+  }
+}
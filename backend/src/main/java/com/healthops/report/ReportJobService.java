@@ -0,0 +1,248 @@
+package com.healthops.report;
+
+import com.healthops.tenant.TenantContext;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link ReportType} exports on a small bounded pool and writes them as CSV
+ * files under {@code reports.dir}. Results are kept until {@code reports.ttl}
+ * after completion; files left over from a previous run are removed by the same
+ * cleanup once they are older than the TTL. Each clinic gets its own workers and
+ * queue, so one clinic's exports never wait behind another's.
+ */
+@Service
+@Lazy(false)
+public class ReportJobService {
+  private static final Logger log = LoggerFactory.getLogger(ReportJobService.class);
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate readOnlyTx;
+  private final Path dir;
+  private final Duration ttl;
+  private final int workers;
+  private final int queueCapacity;
+  private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+  private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+  public ReportJobService(JdbcTemplate jdbc, PlatformTransactionManager txManager,
+                          @Value("${reports.dir:./reports}") String dir,
+                          @Value("${reports.ttl:PT1H}") Duration ttl,
+                          @Value("${reports.workers:2}") int workers,
+                          @Value("${reports.queue-capacity:20}") int queueCapacity) {
+    this.jdbc = jdbc;
+    this.readOnlyTx = new TransactionTemplate(txManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.dir = Path.of(dir);
+    this.ttl = ttl;
+    this.workers = workers;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /** Queues a report for the current clinic; throws {@link RejectedExecutionException} when its queue is full. */
+  public ReportJob submit(ReportType type, Long subjectId, String owner) {
+    String id = UUID.randomUUID().toString();
+    String tenant = TenantContext.current();
+    ReportJob job = new ReportJob(id, tenant, type, subjectId, owner, dir.resolve(id + ".csv"));
+    jobs.put(id, job);
+    try {
+      job.setFuture(executors.computeIfAbsent(String.valueOf(tenant), this::newExecutor)
+          .submit(() -> TenantContext.runAs(tenant, () -> run(job))));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(id);
+      throw e;
+    }
+    return job;
+  }
+
+  public Optional<ReportJob> find(String id) {
+    return Optional.ofNullable(jobs.get(id)).filter(ReportJobService::inCurrentTenant);
+  }
+
+  public List<ReportJob> listFor(String owner) {
+    return jobs.values().stream()
+        .filter(ReportJobService::inCurrentTenant)
+        .filter(j -> owner == null || owner.equals(j.getOwner()))
+        .sorted(Comparator.comparing(ReportJob::getCreatedAt).reversed())
+        .toList();
+  }
+
+  /** Cancels a queued or running job, or discards a finished one and its file. */
+  public void remove(ReportJob job) {
+    jobs.remove(job.getId());
+    if (!job.isFinished()) {
+      job.setStatus(ReportJob.Status.CANCELLED);
+      Future<?> future = job.future();
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+    deleteQuietly(job.getFile());
+  }
+
+  @Scheduled(fixedDelayString = "${reports.cleanup-interval-ms:300000}")
+  public void expireFinished() {
+    Instant now = Instant.now();
+    jobs.values().removeIf(job -> {
+      if (job.getExpiresAt() != null && job.getExpiresAt().isBefore(now)) {
+        deleteQuietly(job.getFile());
+        return true;
+      }
+      return false;
+    });
+    // Files not tracked by any job, e.g. from before a restart
+    if (Files.isDirectory(dir)) {
+      try (Stream<Path> files = Files.list(dir)) {
+        files.filter(f -> !jobs.containsKey(jobId(f)))
+            .filter(f -> isOlderThan(f, now.minus(ttl)))
+            .forEach(ReportJobService::deleteQuietly);
+      } catch (IOException e) {
+        log.warn("Could not clean up report directory {}", dir, e);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+  }
+
+  private ThreadPoolExecutor newExecutor(String tenant) {
+    AtomicInteger threads = new AtomicInteger();
+    return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        r -> {
+          Thread t = new Thread(r, "report-" + tenant + "-" + threads.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  private static boolean inCurrentTenant(ReportJob job) {
+    return Objects.equals(job.getTenant(), TenantContext.current());
+  }
+
+  private void run(ReportJob job) {
+    if (job.getStatus() == ReportJob.Status.CANCELLED) {
+      return;
+    }
+    job.setStatus(ReportJob.Status.RUNNING);
+    Path temp = job.getFile().resolveSibling(job.getFile().getFileName() + ".part");
+    try {
+      Files.createDirectories(dir);
+      Object[] args = job.getSubjectId() != null ? new Object[] {job.getSubjectId()} : new Object[0];
+      job.setTotalRows(jdbc.queryForObject(job.getType().countSql(), Long.class, args));
+      try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        write(job.getType(), args, out, () -> {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+          }
+          job.rowCounter().incrementAndGet();
+        });
+      }
+      Files.move(temp, job.getFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      job.finish(ReportJob.Status.COMPLETED, Files.size(job.getFile()), null, Instant.now().plus(ttl));
+    } catch (CancellationException e) {
+      deleteQuietly(temp);
+      job.finish(ReportJob.Status.CANCELLED, 0, null, Instant.now());
+    } catch (Exception e) {
+      log.warn("Report job {} ({}) failed", job.getId(), job.getType(), e);
+      deleteQuietly(temp);
+      job.finish(ReportJob.Status.FAILED, 0, e.getMessage(), Instant.now().plus(ttl));
+    }
+  }
+
+  /** Writes a report straight to {@code out}, in the layout of a job's file; for the synchronous CSV endpoints. */
+  public void write(ReportType type, Long subjectId, Writer out) throws IOException {
+    write(type, subjectId != null ? new Object[] {subjectId} : new Object[0], out, () -> { });
+  }
+
+  private void write(ReportType type, Object[] args, Writer out, Runnable eachRow) throws IOException {
+    out.write(type.header());
+    out.write('\n');
+    // Streaming needs a transaction: the driver only honours the fetch size with autocommit off
+    readOnlyTx.executeWithoutResult(status -> jdbc.query(con -> {
+      var ps = con.prepareStatement(type.sql());
+      ps.setFetchSize(1000);
+      for (int i = 0; i < args.length; i++) {
+        ps.setObject(i + 1, args[i]);
+      }
+      return ps;
+    }, rs -> {
+      eachRow.run();
+      writeRow(out, rs);
+    }));
+  }
+
+  private static void writeRow(Writer out, ResultSet rs) throws SQLException {
+    int columns = rs.getMetaData().getColumnCount();
+    try {
+      for (int i = 1; i <= columns; i++) {
+        if (i > 1) {
+          out.write(',');
+        }
+        out.write(format(rs.getObject(i)));
+      }
+      out.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Same rendering as the synchronous endpoints: instants in ISO-8601 UTC, separators blanked out
+  private static String format(Object value) {
+    if (value == null) {
+      return "";
+    }
+    if (value instanceof java.sql.Timestamp ts) {
+      return ts.toLocalDateTime().toInstant(ZoneOffset.UTC).toString();
+    }
+    return value.toString().replaceAll("[\r\n,]", " ");
+  }
+
+  private static String jobId(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.indexOf('.');
+    return dot < 0 ? name : name.substring(0, dot);
+  }
+
+  private static boolean isOlderThan(Path file, Instant cutoff) {
+    try {
+      return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Could not delete {}", file, e);
+    }
+  }
+}
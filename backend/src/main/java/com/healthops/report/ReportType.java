@@ -0,0 +1,62 @@
+package com.healthops.report;
+
+/**
+ * Reports that can run as background jobs. The column layouts match the
+ * synchronous CSV endpoints so existing consumers can switch without changes.
+ * Types with a subject take the doctor or patient id as their only parameter.
+ */
+public enum ReportType {
+  APPOINTMENTS("appointments-report",
+      "Appointment ID,Patient Code,Patient Name,Doctor,Scheduled Date,Status,Reason",
+      "SELECT a.id, p.code, p.full_name, u.full_name, a.scheduled_at, a.status, a.reason " +
+      "FROM appointments a JOIN patients p ON p.id = a.patient_id " +
+      "LEFT JOIN doctors d ON d.id = a.doctor_id LEFT JOIN users u ON u.id = d.user_id " +
+      "WHERE p.deleted_at IS NULL ORDER BY a.scheduled_at",
+      "SELECT COUNT(*) FROM appointments a JOIN patients p ON p.id = a.patient_id WHERE p.deleted_at IS NULL", false),
+
+  PATIENTS("patients-report",
+      "Patient Code,Full Name,Date of Birth,Phone,Address,Total Visits,Last Visit,Next Appointment",
+      "SELECT p.code, p.full_name, p.dob, p.phone, p.address, " +
+      "coalesce(s.visit_count, 0), s.last_visit_at, s.next_appointment_at " +
+      "FROM patients p LEFT JOIN patient_summary s ON s.patient_id = p.id " +
+      "WHERE p.deleted_at IS NULL ORDER BY p.id",
+      "SELECT COUNT(*) FROM patients WHERE deleted_at IS NULL", false),
+
+  DOCTOR_VISITS("doctor-visits-report",
+      "Visit Date,Patient Code,Patient Name,Diagnosis,Prescription,Notes",
+      "SELECT v.visit_at, p.code, p.full_name, v.diagnosis, v.prescription, v.notes " +
+      "FROM visits v JOIN patients p ON p.id = v.patient_id " +
+      "WHERE v.doctor_id = ? AND p.deleted_at IS NULL ORDER BY v.visit_at DESC",
+      "SELECT COUNT(*) FROM visits v JOIN patients p ON p.id = v.patient_id " +
+      "WHERE v.doctor_id = ? AND p.deleted_at IS NULL", true),
+
+  PATIENT_VISITS("patient-visits",
+      "Visit Date,Doctor,Diagnosis,Prescription,Notes",
+      "SELECT v.visit_at, u.full_name, v.diagnosis, v.prescription, v.notes " +
+      "FROM visits v LEFT JOIN doctors d ON d.id = v.doctor_id LEFT JOIN users u ON u.id = d.user_id " +
+      "WHERE v.patient_id = ? ORDER BY v.visit_at DESC",
+      "SELECT COUNT(*) FROM visits WHERE patient_id = ?", true);
+
+  private final String fileName;
+  private final String header;
+  private final String sql;
+  private final String countSql;
+  private final boolean requiresSubject;
+
+  ReportType(String fileName, String header, String sql, String countSql, boolean requiresSubject) {
+    this.fileName = fileName;
+    this.header = header;
+    this.sql = sql;
+    this.countSql = countSql;
+    this.requiresSubject = requiresSubject;
+  }
+
+  public String fileName(Long subjectId) {
+    return (subjectId != null ? fileName + "-" + subjectId : fileName) + ".csv";
+  }
+
+  public String header() { return header; }
+  public String sql() { return sql; }
+  public String countSql() { return countSql; }
+  public boolean requiresSubject() { return requiresSubject; }
+}
@@ -11,6 +11,7 @@ import java.util.Map;
 
 @Service
 public class JwtService {
+  public static final String CLINIC_CLAIM = "clinic";
 
   private final Key key;
   private final long expirationMs;
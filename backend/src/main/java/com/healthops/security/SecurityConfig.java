@@ -1,6 +1,13 @@
 package com.healthops.security;
 
+import com.healthops.admission.AdmissionFilter;
+import com.healthops.admission.BulkheadFilter;
+import com.healthops.admission.Bulkheads;
+import com.healthops.admission.RateLimiter;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.Tenants;
 import com.healthops.user.UserService;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,10 +41,17 @@ public class SecurityConfig {
 
   private final JwtService jwtService;
   private final UserService userService;
+  private final Tenants tenants;
+  private final RateLimiter rateLimiter;
+  private final Bulkheads bulkheads;
 
-  public SecurityConfig(JwtService jwtService, UserService userService) {
+  public SecurityConfig(JwtService jwtService, UserService userService, Tenants tenants, RateLimiter rateLimiter,
+                        Bulkheads bulkheads) {
     this.jwtService = jwtService;
     this.userService = userService;
+    this.tenants = tenants;
+    this.rateLimiter = rateLimiter;
+    this.bulkheads = bulkheads;
   }
   
   @Bean
@@ -48,7 +62,7 @@ public class SecurityConfig {
     config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
     config.setAllowedHeaders(Arrays.asList("*"));
     config.setAllowCredentials(true);
-    config.setExposedHeaders(Arrays.asList("Authorization"));
+    config.setExposedHeaders(Arrays.asList("Authorization", "ETag", "Location", "Content-Disposition", "Content-Range", "Accept-Ranges"));
     config.setMaxAge(3600L);
 
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -63,17 +77,23 @@ public class SecurityConfig {
         .cors(cors -> cors.configurationSource(corsConfigurationSource()))
         .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
         .authorizeHttpRequests(auth -> auth
+            // Streamed responses finish on an async dispatch of a request that was already authorized
+            .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
             .requestMatchers(HttpMethod.POST, "/api/auth/login", "/api/auth/register").permitAll()
             .requestMatchers(HttpMethod.GET, "/api/auth/test").permitAll()
             .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
             .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll() // Allow preflight requests
+            .requestMatchers("/actuator/health/**").permitAll()
+            .requestMatchers("/actuator/**").hasRole("ADMIN")
             .requestMatchers("/api/admin/**").hasRole("ADMIN")
             .requestMatchers("/api/doctor/**").hasAnyRole("DOCTOR", "ADMIN")
             .requestMatchers("/api/reception/**").hasAnyRole("RECEPTIONIST", "ADMIN")
             .requestMatchers("/api/reports/**").hasAnyRole("ADMIN", "DOCTOR", "RECEPTIONIST")
             .anyRequest().authenticated()
         )
-        .addFilterBefore(new JwtAuthFilter(jwtService, userService), UsernamePasswordAuthenticationFilter.class);
+        .addFilterBefore(new JwtAuthFilter(jwtService, userService, tenants), UsernamePasswordAuthenticationFilter.class)
+        .addFilterAfter(new AdmissionFilter(rateLimiter), JwtAuthFilter.class)
+        .addFilterAfter(new BulkheadFilter(bulkheads), AdmissionFilter.class);
       return http.build();
   }
 
@@ -85,32 +105,61 @@ public class SecurityConfig {
     return config.getAuthenticationManager();
   }
 
+  // Resolves the clinic before anything touches the database: the token's clinic claim,
+  // or for anonymous requests such as login the X-Clinic-Id header, else the default clinic
   static class JwtAuthFilter extends OncePerRequestFilter {
+    static final String CLINIC_HEADER = "X-Clinic-Id";
+
     private final JwtService jwtService;
     private final UserService userService;
+    private final Tenants tenants;
     
-    JwtAuthFilter(JwtService jwtService, UserService userService) {
+    JwtAuthFilter(JwtService jwtService, UserService userService, Tenants tenants) {
       this.jwtService = jwtService; 
       this.userService = userService;
+      this.tenants = tenants;
     }
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) 
         throws ServletException, IOException {
-      String auth = request.getHeader("Authorization");
-      if (auth != null && auth.startsWith("Bearer ")) {
-        String token = auth.substring(7);
-        try {
-          var jws = jwtService.parse(token);
-          String email = jws.getBody().getSubject();
-          var userDetails = userService.loadUserByUsername(email);
-          var authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-          SecurityContextHolder.getContext().setAuthentication(authToken);
-        } catch (Exception ignored) {
-          // Invalid token, continue without authentication
+      try {
+        String auth = request.getHeader("Authorization");
+        if (auth != null && auth.startsWith("Bearer ")) {
+          String token = auth.substring(7);
+          try {
+            var claims = jwtService.parse(token).getBody();
+            // Tokens issued before tenancy carry no clinic and belong to the default one
+            String clinic = claims.get(JwtService.CLINIC_CLAIM, String.class);
+            clinic = clinic != null ? clinic : tenants.defaultTenant();
+            if (tenants.isKnown(clinic)) {
+              TenantContext.set(clinic);
+              var userDetails = userService.loadUserByUsername(claims.getSubject());
+              var authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+              SecurityContextHolder.getContext().setAuthentication(authToken);
+            }
+          } catch (Exception ignored) {
+            // Invalid token, continue without authentication
+            TenantContext.clear();
+          }
+        }
+        if (TenantContext.current() == null) {
+          String clinic = request.getHeader(CLINIC_HEADER);
+          if (clinic == null || clinic.isBlank()) {
+            clinic = tenants.defaultTenant();
+          } else if (!tenants.isKnown(clinic)) {
+            // Written directly: an error dispatch would be rejected by the chain as unauthenticated
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"message\":\"Unknown clinic\"}");
+            return;
+          }
+          TenantContext.set(clinic);
         }
+        chain.doFilter(request, response);
+      } finally {
+        TenantContext.clear();
       }
-      chain.doFilter(request, response);
     }
   }
 }
\ No newline at end of file
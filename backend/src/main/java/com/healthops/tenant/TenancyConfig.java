@@ -0,0 +1,105 @@
+package com.healthops.tenant;
+
+import com.healthops.admission.BulkheadProperties;
+import com.healthops.admission.EndpointClass;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One Hikari pool per clinic behind a routing DataSource, so every repository and
+ * JdbcTemplate query goes to the database of {@link TenantContext#current()}.
+ * Pool sizes are per clinic: a long export in one clinic can only exhaust that
+ * clinic's connections. With bulkheads enabled every clinic also gets a small pool
+ * per endpoint class, whose connections cancel statements running longer than the
+ * class's statement timeout, so slow reports cannot starve logins and bookings.
+ */
+@Configuration
+@EnableConfigurationProperties(TenantProperties.class)
+public class TenancyConfig {
+
+  @Bean
+  @Primary
+  public TenantRoutingDataSource dataSource(DataSourceProperties defaults, TenantProperties props,
+                                            BulkheadProperties bulkheads, Tenants tenants) {
+    Map<String, TenantProperties.DataSourceSettings> clinics = new LinkedHashMap<>(props.getTenants());
+    if (clinics.isEmpty()) {
+      var settings = new TenantProperties.DataSourceSettings();
+      settings.setUrl(defaults.determineUrl());
+      settings.setUsername(defaults.determineUsername());
+      settings.setPassword(defaults.determinePassword());
+      clinics.put(tenants.defaultTenant(), settings);
+    }
+    Map<String, DataSource> pools = new LinkedHashMap<>();
+    Map<String, DataSource> classPools = new LinkedHashMap<>();
+    clinics.forEach((id, settings) -> {
+      pools.put(id, pool(id, settings, defaults));
+      if (bulkheads.isEnabled()) {
+        bulkheads.getClasses().forEach((endpointClass, classSettings) -> classPools.put(
+            TenantRoutingDataSource.key(id, endpointClass), classPool(id, endpointClass, settings, classSettings, defaults)));
+      }
+    });
+    return new TenantRoutingDataSource(pools, classPools, tenants.defaultTenant());
+  }
+
+  // The pools are not beans, so Boot's own Hikari metrics do not see them
+  @Bean
+  public MeterBinder tenantPoolMetrics(TenantRoutingDataSource dataSource) {
+    return registry -> dataSource.pools().forEach(pool ->
+        ((HikariDataSource) pool).setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+  }
+
+  // Boot migrates the primary DataSource only; run the same migrations against every clinic instead
+  @Bean
+  public FlywayMigrationStrategy tenantMigrations(TenantRoutingDataSource dataSource, TenantProperties props, Tenants tenants) {
+    return flyway -> {
+      for (String id : tenants.ids()) {
+        var configuration = Flyway.configure().configuration(flyway.getConfiguration()).dataSource(dataSource.dataSource(id));
+        var settings = props.getTenants().get(id);
+        if (settings != null && settings.getSchema() != null) {
+          configuration.schemas(settings.getSchema()).defaultSchema(settings.getSchema()).createSchemas(true);
+        }
+        configuration.load().migrate();
+      }
+    };
+  }
+
+  private static HikariDataSource classPool(String id, EndpointClass endpointClass,
+                                            TenantProperties.DataSourceSettings settings,
+                                            BulkheadProperties.Settings classSettings, DataSourceProperties defaults) {
+    HikariDataSource ds = pool(id + "-" + endpointClass.name().toLowerCase(), settings, defaults);
+    ds.setMaximumPoolSize(classSettings.getPoolSize());
+    ds.setMinimumIdle(Math.min(settings.getMinIdle(), classSettings.getPoolSize()));
+    ds.setConnectionTimeout(classSettings.getConnectionTimeout().toMillis());
+    // PostgreSQL cancels overrunning statements itself; the request then fails with 503
+    ds.setConnectionInitSql("SET statement_timeout = " + classSettings.getStatementTimeout().toMillis());
+    return ds;
+  }
+
+  private static HikariDataSource pool(String id, TenantProperties.DataSourceSettings settings, DataSourceProperties defaults) {
+    HikariDataSource ds = new HikariDataSource();
+    ds.setPoolName("tenant-" + id);
+    ds.setDriverClassName(defaults.determineDriverClassName());
+    ds.setJdbcUrl(settings.getUrl());
+    ds.setUsername(settings.getUsername() != null ? settings.getUsername() : defaults.determineUsername());
+    ds.setPassword(settings.getPassword() != null ? settings.getPassword() : defaults.determinePassword());
+    if (settings.getSchema() != null) {
+      ds.setSchema(settings.getSchema());
+    }
+    ds.setMaximumPoolSize(settings.getMaxPoolSize());
+    ds.setMinimumIdle(settings.getMinIdle());
+    ds.setConnectionTimeout(settings.getConnectionTimeoutMs());
+    return ds;
+  }
+}
@@ -0,0 +1,47 @@
+package com.healthops.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * The clinic the current thread works for. Set per request by the JWT filter and
+ * by background jobs before they touch the database; {@link TenantRoutingDataSource}
+ * picks the connection pool from it.
+ */
+public final class TenantContext {
+  private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+  private TenantContext() {}
+
+  public static String current() {
+    return CURRENT.get();
+  }
+
+  public static void set(String tenant) {
+    CURRENT.set(tenant);
+  }
+
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  public static void runAs(String tenant, Runnable task) {
+    callAs(tenant, () -> {
+      task.run();
+      return null;
+    });
+  }
+
+  public static <T> T callAs(String tenant, Supplier<T> task) {
+    String previous = CURRENT.get();
+    CURRENT.set(tenant);
+    try {
+      return task.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
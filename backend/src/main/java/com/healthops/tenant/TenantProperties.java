@@ -0,0 +1,32 @@
+package com.healthops.tenant;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Clinics served by this deployment, each with its own database (or schema) and
+ * connection pool. With no tenants configured the app runs as the single
+ * {@code default-tenant} on {@code spring.datasource}.
+ */
+@ConfigurationProperties("tenancy")
+@Getter @Setter
+public class TenantProperties {
+  private String defaultTenant = "default";
+  private Map<String, DataSourceSettings> tenants = new LinkedHashMap<>();
+
+  @Getter @Setter
+  public static class DataSourceSettings {
+    private String url;
+    private String username;
+    private String password;
+    // Optional: keeps the tenant in its own schema of a shared database
+    private String schema;
+    private int maxPoolSize = 10;
+    private int minIdle = 1;
+    private long connectionTimeoutMs = 30000;
+  }
+}
@@ -0,0 +1,59 @@
+package com.healthops.tenant;
+
+import com.healthops.admission.EndpointClass;
+import com.healthops.admission.EndpointClassContext;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Threads without a tenant (startup, Hibernate bootstrap) use the default tenant's pool; threads
+// serving an endpoint class with its own sub-pool use that clinic's sub-pool
+public class TenantRoutingDataSource extends AbstractRoutingDataSource {
+  private final Map<String, DataSource> dataSources;
+  private final Map<String, DataSource> classPools;
+
+  public TenantRoutingDataSource(Map<String, DataSource> dataSources, Map<String, DataSource> classPools,
+                                 String defaultTenant) {
+    this.dataSources = Map.copyOf(dataSources);
+    this.classPools = Map.copyOf(classPools);
+    Map<Object, Object> targets = new HashMap<>(dataSources);
+    targets.putAll(classPools);
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(dataSources.get(defaultTenant));
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  static String key(String tenant, EndpointClass endpointClass) {
+    return tenant + ":" + endpointClass.name().toLowerCase();
+  }
+
+  public DataSource dataSource(String tenant) {
+    return dataSources.get(tenant);
+  }
+
+  /** Every pool, main and per class, of every clinic. */
+  public Collection<DataSource> pools() {
+    List<DataSource> pools = new ArrayList<>(dataSources.values());
+    pools.addAll(classPools.values());
+    return pools;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    String tenant = TenantContext.current();
+    EndpointClass endpointClass = EndpointClassContext.current();
+    if (tenant != null && endpointClass != null) {
+      String key = key(tenant, endpointClass);
+      if (classPools.containsKey(key)) {
+        return key;
+      }
+    }
+    return tenant;
+  }
+}
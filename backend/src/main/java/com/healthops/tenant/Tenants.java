@@ -0,0 +1,44 @@
+package com.healthops.tenant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/** The configured clinic ids, and a way for background work to visit each of them. */
+@Component
+public class Tenants {
+  private static final Logger log = LoggerFactory.getLogger(Tenants.class);
+
+  private final List<String> ids;
+  private final String defaultTenant;
+
+  public Tenants(TenantProperties props) {
+    this.ids = props.getTenants().isEmpty() ? List.of(props.getDefaultTenant()) : List.copyOf(props.getTenants().keySet());
+    this.defaultTenant = ids.contains(props.getDefaultTenant()) ? props.getDefaultTenant() : ids.get(0);
+  }
+
+  public List<String> ids() {
+    return ids;
+  }
+
+  public String defaultTenant() {
+    return defaultTenant;
+  }
+
+  public boolean isKnown(String tenant) {
+    return tenant != null && ids.contains(tenant);
+  }
+
+  /** Runs the task once per clinic; a failure for one clinic does not stop the others. */
+  public void forEach(Runnable task) {
+    for (String id : ids) {
+      try {
+        TenantContext.runAs(id, task);
+      } catch (RuntimeException e) {
+        log.error("Task failed for tenant {}", id, e);
+      }
+    }
+  }
+}
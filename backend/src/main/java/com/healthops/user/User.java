@@ -1,5 +1,7 @@
 package com.healthops.user;
 
+import com.healthops.cache.ResourceVersionListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -8,6 +10,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity @Table(name="users")
+@EntityListeners(ResourceVersionListener.class)
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class User {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,6 +20,7 @@ public class User {
   private String email;
 
   @Column(nullable=false)
+  @JsonIgnore
   private String password;
 
   @Column(nullable=false)
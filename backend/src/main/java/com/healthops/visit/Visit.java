@@ -3,12 +3,17 @@ package com.healthops.visit;
 import com.healthops.appointment.Appointment;
 import com.healthops.doctor.Doctor;
 import com.healthops.patient.Patient;
+import com.healthops.patient.PatientSummaryListener;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.Instant;
 
 @Entity @Table(name="visits")
+@EntityListeners(PatientSummaryListener.class)
+// Visits of a deleted patient stay hidden until the purger removes them
+@SQLRestriction("NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = patient_id AND p.deleted_at IS NOT NULL)")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Visit {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,18 +25,16 @@ public class Visit {
   @ManyToOne @JoinColumn(name="doctor_id")
   private Doctor doctor;
 
-  @ManyToOne @JoinColumn(name="appointment_id")
+  // appointments is partitioned, so appointment_id cannot carry a foreign key
+  @ManyToOne @JoinColumn(name="appointment_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
   private Appointment appointment;
 
   private Instant visitAt = Instant.now();
 
-  @Lob 
   @Column(columnDefinition = "text")
   private String notes;
-  @Lob 
   @Column(columnDefinition = "text")
   private String diagnosis;
-  @Lob 
   @Column(columnDefinition = "text")
   private String prescription;
 }
@@ -0,0 +1,118 @@
+package com.healthops.visit;
+
+import com.healthops.analytics.TermCounts;
+import com.healthops.appointment.Appointment;
+import com.healthops.doctor.Doctor;
+import com.healthops.patient.Patient;
+import com.healthops.patient.PatientSummaries;
+import jakarta.persistence.EntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Records a visit in a single statement: it resolves the signed-in doctor,
+ * marks the linked appointment COMPLETED and inserts the visit. Only a scheduled
+ * appointment of the same patient and doctor is completed and linked; any other
+ * id leaves the visit without one. The patient is checked by its foreign key, so
+ * a missing patient fails the whole statement with a foreign-key violation and
+ * leaves the appointment untouched; a deleted patient or doctor matches no doctor
+ * row, so nothing is written. Recording, editing and deleting a visit adjust its
+ * {@link TermCounts} in the same transaction.
+ */
+@Service
+public class VisitRecorder {
+  private static final String INSERT_SQL =
+      "WITH doctor AS (" +
+      "  SELECT d.id FROM doctors d JOIN users u ON u.id = d.user_id " +
+      "  WHERE u.email = ? AND d.deleted_at IS NULL " +
+      "  AND NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = ? AND p.deleted_at IS NOT NULL)), " +
+      "completed AS (" +
+      "  UPDATE appointments SET status = 'COMPLETED' " +
+      "  WHERE id = ? AND patient_id = ? AND doctor_id = (SELECT id FROM doctor) AND status = 'SCHEDULED' " +
+      "  RETURNING id) " +
+      "INSERT INTO visits(patient_id, doctor_id, appointment_id, visit_at, notes, diagnosis, prescription) " +
+      "SELECT ?, doctor.id, (SELECT id FROM completed LIMIT 1), ?, ?, ?, ? FROM doctor " +
+      "RETURNING id, doctor_id, appointment_id";
+  // Typed, so nulls bind without a parameter metadata round trip
+  private static final int[] ARG_TYPES = {
+      Types.VARCHAR, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR,
+      Types.VARCHAR};
+
+  private final JdbcTemplate jdbc;
+  private final EntityManager em;
+  private final PatientSummaries summaries;
+  private final VisitRepository visitRepo;
+  private final TermCounts termCounts;
+  private final TransactionTemplate tx;
+
+  public VisitRecorder(JdbcTemplate jdbc, EntityManager em, PatientSummaries summaries, VisitRepository visitRepo,
+                       TermCounts termCounts, TransactionTemplate tx) {
+    this.jdbc = jdbc;
+    this.em = em;
+    this.summaries = summaries;
+    this.visitRepo = visitRepo;
+    this.termCounts = termCounts;
+    this.tx = tx;
+  }
+
+  /** Returns the new visit, or empty if the email does not belong to a doctor or the patient was deleted. */
+  public Optional<Visit> record(String doctorEmail, Long patientId, Long appointmentId,
+                                String notes, String diagnosis, String prescription) {
+    Instant visitAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    Object[] args = {doctorEmail, patientId, appointmentId, patientId, patientId, Timestamp.from(visitAt), notes, diagnosis, prescription};
+    List<Visit> created = tx.execute(status -> {
+      List<Visit> visits = jdbc.query(INSERT_SQL, args, ARG_TYPES, (rs, i) -> {
+        Long appointment = rs.getObject("appointment_id", Long.class);
+        return Visit.builder()
+            .id(rs.getLong("id"))
+            .patient(em.getReference(Patient.class, patientId))
+            .doctor(em.getReference(Doctor.class, rs.getLong("doctor_id")))
+            .appointment(appointment != null ? em.getReference(Appointment.class, appointment) : null)
+            .visitAt(visitAt)
+            .notes(notes)
+            .diagnosis(diagnosis)
+            .prescription(prescription)
+            .build();
+      });
+      visits.forEach(visit -> termCounts.changed(visit.getDoctor().getId(), visitAt, null, null, diagnosis, prescription));
+      return visits;
+    });
+    if (!created.isEmpty()) {
+      summaries.refreshAfterCommit(patientId);
+    }
+    return created.stream().findFirst();
+  }
+
+  /** Returns the edited visit, or empty if there is none with this id. */
+  public Optional<Visit> update(Long id, String notes, String diagnosis, String prescription) {
+    return tx.execute(status -> visitRepo.findById(id).map(visit -> {
+      termCounts.changed(doctorId(visit), visit.getVisitAt(), visit.getDiagnosis(), visit.getPrescription(),
+          diagnosis, prescription);
+      visit.setNotes(notes);
+      visit.setDiagnosis(diagnosis);
+      visit.setPrescription(prescription);
+      return visitRepo.save(visit);
+    }));
+  }
+
+  /** Returns false if there is no visit with this id. */
+  public boolean delete(Long id) {
+    return tx.execute(status -> visitRepo.findById(id).map(visit -> {
+      termCounts.changed(doctorId(visit), visit.getVisitAt(), visit.getDiagnosis(), visit.getPrescription(), null, null);
+      visitRepo.delete(visit);
+      return true;
+    }).orElse(false));
+  }
+
+  private static Long doctorId(Visit visit) {
+    return visit.getDoctor() != null ? visit.getDoctor().getId() : null;
+  }
+}
@@ -1,15 +1,46 @@
 package com.healthops.visit;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface VisitRepository extends JpaRepository<Visit, Long> {
     List<Visit> findByPatientIdOrderByVisitAtDesc(Long patientId);
     List<Visit> findByDoctorIdOrderByVisitAtDesc(Long doctorId);
 
+    String SUMMARY_SELECT =
+        "SELECT new com.healthops.visit.VisitSummary(v.id, v.visitAt, p.id, p.code, p.fullName, d.id, u.fullName, v.appointment.id) " +
+        "FROM Visit v LEFT JOIN v.patient p LEFT JOIN v.doctor d LEFT JOIN d.user u ";
+
+    @Query(SUMMARY_SELECT + "WHERE p.id = :patientId ORDER BY v.visitAt DESC")
+    List<VisitSummary> findSummariesByPatientId(@Param("patientId") Long patientId);
+
+    @Query(SUMMARY_SELECT + "WHERE d.id = :doctorId ORDER BY v.visitAt DESC")
+    List<VisitSummary> findSummariesByDoctorId(@Param("doctorId") Long doctorId);
+
+    @Query(SUMMARY_SELECT + "ORDER BY v.visitAt DESC")
+    List<VisitSummary> findAllSummaries();
+
+    // Cursors for streamed lists; every association the JSON includes is fetched in the same query
+    String STREAM_SELECT =
+        "SELECT v FROM Visit v LEFT JOIN FETCH v.patient LEFT JOIN FETCH v.doctor d LEFT JOIN FETCH d.user " +
+        "LEFT JOIN FETCH v.appointment a LEFT JOIN FETCH a.patient LEFT JOIN FETCH a.doctor ad " +
+        "LEFT JOIN FETCH ad.user LEFT JOIN FETCH a.createdBy ";
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(STREAM_SELECT)
+    Stream<Visit> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(STREAM_SELECT + "WHERE d.id = :doctorId ORDER BY v.visitAt DESC")
+    Stream<Visit> streamByDoctorId(@Param("doctorId") Long doctorId);
+
     long countByPatientId(Long patientId);
     long countByDoctorId(Long doctorId);
 
@@ -17,7 +48,8 @@ public interface VisitRepository extends JpaRepository<Visit, Long> {
     @Query(
         value = "SELECT COUNT(*) FROM visits v " +
                 "WHERE v.doctor_id = :doctorId " +
-                "AND DATE(v.visit_at) = CURRENT_DATE",
+                "AND DATE(v.visit_at) = CURRENT_DATE " +
+                "AND NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = v.patient_id AND p.deleted_at IS NOT NULL)",
         nativeQuery = true
     )
     long countTodayVisitsByDoctor(@Param("doctorId") Long doctorId);
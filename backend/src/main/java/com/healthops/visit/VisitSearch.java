@@ -0,0 +1,100 @@
+package com.healthops.visit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full-text search over the notes, diagnosis and prescription of visits, using
+ * the trigger-maintained {@code visits.search} column and its GIN index. Queries use web
+ * search syntax ({@code metformin -insulin}, {@code "chest pain"}, {@code asthma or copd}).
+ * Hits are ranked by cover density, with matches in the diagnosis weighted above
+ * the prescription and both above notes. Only the newest
+ * {@code visits.search.max-candidates} matches are ranked: a word found in a large
+ * share of the visits would otherwise mean ranking all of them, while scoped to a
+ * doctor or patient the newest matches are read straight off their visit_at
+ * index. Only the rows of the requested page get snippets.
+ */
+@Service
+public class VisitSearch {
+  // Control characters cannot occur in the escaped text, so they mark the matches until escaping is done
+  private static final String START = "\u0001";
+  private static final String STOP = "\u0002";
+  private static final String HEADLINE_OPTIONS =
+      "StartSel=" + START + ", StopSel=" + STOP + ", MaxWords=30, MinWords=10, MaxFragments=2, FragmentDelimiter=\" … \"";
+
+  // Not materialized, so the planner sees the query and can tell a common word (newest
+  // visits first, checking each) from a rare one (the GIN index)
+  private static final String SEARCH_SQL =
+      "WITH q AS NOT MATERIALIZED (SELECT websearch_to_tsquery('english', ?) AS query), " +
+      "candidates AS (" +
+      "  SELECT v.id, v.visit_at, v.patient_id, v.doctor_id, v.diagnosis, v.prescription, v.notes, v.search " +
+      "  FROM visits v, q WHERE v.search @@ q.query %s " +
+      "  AND NOT EXISTS (SELECT 1 FROM patients p WHERE p.id = v.patient_id AND p.deleted_at IS NOT NULL) " +
+      "  ORDER BY v.visit_at DESC, v.id DESC LIMIT ?), " +
+      "hits AS (" +
+      "  SELECT c.*, ts_rank_cd(c.search, q.query) AS rank FROM candidates c, q " +
+      "  ORDER BY rank DESC, c.visit_at DESC, c.id DESC LIMIT ? OFFSET ?) " +
+      "SELECT h.id, h.visit_at, p.id AS patient_id, p.code AS patient_code, p.full_name AS patient_name, " +
+      "h.doctor_id, u.full_name AS doctor_name, h.rank, " +
+      headline("diagnosis") + ", " + headline("prescription") + ", " + headline("notes") + " " +
+      "FROM hits h CROSS JOIN q LEFT JOIN patients p ON p.id = h.patient_id " +
+      "LEFT JOIN doctors d ON d.id = h.doctor_id LEFT JOIN users u ON u.id = d.user_id " +
+      "ORDER BY h.rank DESC, h.visit_at DESC, h.id DESC";
+
+  private static final RowMapper<VisitSearchHit> ROW = (rs, i) -> new VisitSearchHit(
+      rs.getLong("id"), rs.getTimestamp("visit_at").toInstant(),
+      rs.getObject("patient_id", Long.class), rs.getString("patient_code"), rs.getString("patient_name"),
+      rs.getObject("doctor_id", Long.class), rs.getString("doctor_name"), rs.getDouble("rank"),
+      snippet(rs, "diagnosis"), snippet(rs, "prescription"), snippet(rs, "notes"));
+
+  private final JdbcTemplate jdbc;
+  private final int maxCandidates;
+
+  public VisitSearch(JdbcTemplate jdbc, @Value("${visits.search.max-candidates:5000}") int maxCandidates) {
+    this.jdbc = jdbc;
+    this.maxCandidates = maxCandidates;
+  }
+
+  /** Page {@code page} of the visits matching {@code query}, of one doctor and/or patient; null means any. */
+  public VisitSearchPage search(String query, Long doctorId, Long patientId, int page, int size) {
+    StringBuilder scope = new StringBuilder();
+    List<Object> args = new ArrayList<>(List.of(query));
+    if (doctorId != null) {
+      scope.append("AND v.doctor_id = ? ");
+      args.add(doctorId);
+    }
+    if (patientId != null) {
+      scope.append("AND v.patient_id = ? ");
+      args.add(patientId);
+    }
+    args.add(maxCandidates);
+    // One row more than the page tells whether there is a next one
+    args.add(size + 1);
+    args.add((long) page * size);
+    args.add(HEADLINE_OPTIONS);
+    args.add(HEADLINE_OPTIONS);
+    args.add(HEADLINE_OPTIONS);
+    List<VisitSearchHit> hits = jdbc.query(SEARCH_SQL.formatted(scope), ROW, args.toArray());
+    boolean hasNext = hits.size() > size;
+    return new VisitSearchPage(hasNext ? hits.subList(0, size) : hits, page, size, hasNext);
+  }
+
+  private static String headline(String column) {
+    return "CASE WHEN to_tsvector('english', coalesce(h." + column + ", '')) @@ q.query " +
+        "THEN ts_headline('english', h." + column + ", q.query, ?) END AS " + column;
+  }
+
+  private static String snippet(ResultSet rs, String column) throws SQLException {
+    String headline = rs.getString(column);
+    return headline == null ? null
+        : HtmlUtils.htmlEscape(headline).replace(START, "<mark>").replace(STOP, "</mark>");
+  }
+}
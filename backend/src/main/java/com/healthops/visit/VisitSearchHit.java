@@ -0,0 +1,10 @@
+package com.healthops.visit;
+
+import java.time.Instant;
+
+// A visit matching a search; each text column is an HTML-escaped snippet with the
+// matched words in <mark>, or null if the column has no match
+public record VisitSearchHit(Long id, Instant visitAt,
+                             Long patientId, String patientCode, String patientName,
+                             Long doctorId, String doctorName, double rank,
+                             String diagnosis, String prescription, String notes) {}
@@ -0,0 +1,6 @@
+package com.healthops.visit;
+
+import java.util.List;
+
+// One page of search hits; there is no total, which would mean counting every match
+public record VisitSearchPage(List<VisitSearchHit> hits, int page, int size, boolean hasNext) {}
@@ -0,0 +1,8 @@
+package com.healthops.visit;
+
+import java.time.Instant;
+
+// List view of a visit without the notes/diagnosis/prescription text columns
+public record VisitSummary(Long id, Instant visitAt,
+                           Long patientId, String patientCode, String patientName,
+                           Long doctorId, String doctorName, Long appointmentId) {}
@@ -0,0 +1,211 @@
+package com.healthops.warmup;
+
+import com.healthops.admission.RateLimiter;
+import com.healthops.security.JwtService;
+import com.healthops.tenant.TenantContext;
+import com.healthops.tenant.TenantRoutingDataSource;
+import com.healthops.tenant.Tenants;
+import com.healthops.user.Role;
+import com.healthops.user.User;
+import com.healthops.user.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the backend up before it reports ready. Opens every pool's minimum
+ * connections, then calls the hot read-only endpoints over loopback as an admin of
+ * the default clinic, so the request path, Hibernate's query plans, Jackson's
+ * serializers and the doctor, role and availability lookups have all run before
+ * the first real request. Boot marks the app as accepting traffic
+ * ({@code /actuator/health/readiness}) only once ApplicationReadyEvent listeners
+ * have returned, so readiness stays down until this has finished or given up
+ * after {@code warmup.max-duration}.
+ */
+@Component
+@Lazy(false)
+@EnableConfigurationProperties(WarmupProperties.class)
+public class Warmup {
+  /** Order of ApplicationReadyEvent listeners that must finish before the warm-up calls the endpoints. */
+  public static final int BEFORE_WARMUP = Ordered.LOWEST_PRECEDENCE - 1;
+
+  private static final Logger log = LoggerFactory.getLogger(Warmup.class);
+
+  private final WarmupProperties props;
+  private final TenantRoutingDataSource dataSource;
+  private final JdbcTemplate jdbc;
+  private final UserRepository userRepo;
+  private final JwtService jwt;
+  private final RateLimiter rateLimiter;
+  private final Tenants tenants;
+
+  public Warmup(WarmupProperties props, TenantRoutingDataSource dataSource, JdbcTemplate jdbc,
+                UserRepository userRepo, JwtService jwt, RateLimiter rateLimiter, Tenants tenants) {
+    this.props = props;
+    this.dataSource = dataSource;
+    this.jdbc = jdbc;
+    this.userRepo = userRepo;
+    this.jwt = jwt;
+    this.rateLimiter = rateLimiter;
+    this.tenants = tenants;
+  }
+
+  // Last: startup backfills, whose work the calls should see, are ordered BEFORE_WARMUP
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void run(ApplicationReadyEvent event) {
+    if (!props.isEnabled()) {
+      return;
+    }
+    long start = System.nanoTime();
+    Instant deadline = Instant.now().plus(props.getMaxDuration());
+    int connections = openMinimumConnections();
+    int calls = 0;
+    if (event.getApplicationContext() instanceof WebServerApplicationContext web && web.getWebServer() != null) {
+      try {
+        String tenant = tenants.defaultTenant();
+        calls = TenantContext.callAs(tenant, () -> callHotPaths(tenant, web.getWebServer().getPort(), deadline));
+      } catch (RuntimeException e) {
+        log.warn("Warm-up requests failed; reporting ready anyway", e);
+      }
+    }
+    log.info("Warmed up {} connections and {} requests in {} ms",
+        connections, calls, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  // Holds minimum-idle connections of each pool at once, so all of them are actually opened
+  private int openMinimumConnections() {
+    int opened = 0;
+    for (DataSource pool : dataSource.pools()) {
+      HikariDataSource hikari = (HikariDataSource) pool;
+      List<Connection> held = new ArrayList<>();
+      try {
+        while (held.size() < hikari.getMinimumIdle()) {
+          held.add(hikari.getConnection());
+        }
+      } catch (SQLException e) {
+        log.warn("Could not open connections of pool {}", hikari.getPoolName(), e);
+      } finally {
+        opened += held.size();
+        for (Connection connection : held) {
+          try {
+            connection.close();
+          } catch (SQLException ignored) {
+            // Returned to the pool or evicted by it either way
+          }
+        }
+      }
+    }
+    return opened;
+  }
+
+  private int callHotPaths(String tenant, int port, Instant deadline) {
+    List<User> admins = userRepo.findByRolesName(Role.ADMIN.name());
+    if (admins.isEmpty()) {
+      log.info("No admin account to warm up with; skipping warm-up requests");
+      return 0;
+    }
+    String email = admins.get(0).getEmail();
+    String token = jwt.generate(email, Map.of("role", Role.ADMIN.name(), JwtService.CLINIC_CLAIM, tenant));
+    List<String> paths = resolvePaths();
+    if (paths.isEmpty()) {
+      return 0;
+    }
+
+    HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    int total = props.getIterations() * paths.size();
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger done = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    Callable<Void> caller = () -> {
+      for (int i = next.getAndIncrement(); i < total && Instant.now().isBefore(deadline); i = next.getAndIncrement()) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + paths.get(i % paths.size())))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+            .timeout(Duration.ofSeconds(30))
+            .build();
+        String outcome;
+        try {
+          int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+          outcome = status < 400 ? null : "answered " + status;
+        } catch (IOException e) {
+          outcome = "failed: " + e;
+        }
+        done.incrementAndGet();
+        if (outcome != null && failed.getAndIncrement() == 0) {
+          log.warn("Warm-up request {} {}", request.uri().getPath(), outcome);
+        }
+      }
+      return null;
+    };
+
+    // Warm-up traffic must not use up the admin's real rate limit or be slowed down by it
+    String limiterKey = RateLimiter.caller(tenant, email);
+    rateLimiter.exempt(limiterKey);
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, props.getConcurrency()));
+    try {
+      List<Callable<Void>> callers = new ArrayList<>();
+      for (int i = 0; i < Math.max(1, props.getConcurrency()); i++) {
+        callers.add(caller);
+      }
+      long remaining = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+      pool.invokeAll(callers, remaining, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+      rateLimiter.unexempt(limiterKey);
+    }
+    if (failed.get() > 0) {
+      log.warn("{} of {} warm-up requests failed", failed.get(), done.get());
+    }
+    return done.get();
+  }
+
+  private List<String> resolvePaths() {
+    Long doctorId = first("SELECT id FROM doctors WHERE deleted_at IS NULL ORDER BY id LIMIT 1");
+    Long patientId = first("SELECT id FROM patients WHERE deleted_at IS NULL ORDER BY id LIMIT 1");
+    List<String> paths = new ArrayList<>();
+    for (String path : props.getPaths()) {
+      if ((path.contains("{doctorId}") && doctorId == null) || (path.contains("{patientId}") && patientId == null)) {
+        continue;
+      }
+      paths.add(path.replace("{doctorId}", String.valueOf(doctorId)).replace("{patientId}", String.valueOf(patientId)));
+    }
+    return paths;
+  }
+
+  private Long first(String sql) {
+    return jdbc.queryForList(sql, Long.class).stream().findFirst().orElse(null);
+  }
+}
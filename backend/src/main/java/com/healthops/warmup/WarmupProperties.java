@@ -0,0 +1,27 @@
+package com.healthops.warmup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the startup warm-up calls and for how long. Paths are read-only GET
+ * endpoints an admin may call; {@code {doctorId}} and {@code {patientId}} are
+ * replaced by the first active doctor and patient, and paths whose placeholder
+ * cannot be filled are skipped.
+ */
+@ConfigurationProperties("warmup")
+@Getter @Setter
+public class WarmupProperties {
+  private boolean enabled = true;
+  // Rounds over all paths, shared by the concurrent callers
+  private int iterations = 30;
+  private int concurrency = 4;
+  // Readiness is reported after this at the latest, warm or not
+  private Duration maxDuration = Duration.ofSeconds(60);
+  private List<String> paths = new ArrayList<>();
+}
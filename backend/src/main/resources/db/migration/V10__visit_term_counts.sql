@@ -0,0 +1,10 @@
+-- How many visits of each doctor and day named a diagnosis or prescription term, see TermCounts.
+-- Kept up to date as visits are recorded, edited and deleted; counts outlive archived partitions.
+CREATE TABLE visit_term_counts(
+  field VARCHAR(16) NOT NULL,
+  day DATE NOT NULL,
+  doctor_id BIGINT NOT NULL,
+  term VARCHAR(100) NOT NULL,
+  visits INTEGER NOT NULL,
+  PRIMARY KEY (field, day, doctor_id, term)
+);
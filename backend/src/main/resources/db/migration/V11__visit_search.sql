@@ -0,0 +1,25 @@
+-- Full-text search over visits, see VisitSearch. Diagnosis terms weigh most, then prescription, then notes.
+-- A trigger keeps the column current rather than GENERATED or UPDATE OF, both of which would block
+-- Hibernate's schema update from re-declaring the text columns in development.
+CREATE FUNCTION visit_search_vector(diagnosis TEXT, prescription TEXT, notes TEXT) RETURNS TSVECTOR AS $$
+  SELECT setweight(to_tsvector('english', coalesce(diagnosis, '')), 'A') ||
+         setweight(to_tsvector('english', coalesce(prescription, '')), 'B') ||
+         setweight(to_tsvector('english', coalesce(notes, '')), 'C')
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE FUNCTION visits_search_update() RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'INSERT' OR (NEW.diagnosis, NEW.prescription, NEW.notes) IS DISTINCT FROM (OLD.diagnosis, OLD.prescription, OLD.notes) THEN
+    NEW.search := visit_search_vector(NEW.diagnosis, NEW.prescription, NEW.notes);
+  END IF;
+  RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE visits ADD COLUMN search TSVECTOR;
+UPDATE visits SET search = visit_search_vector(diagnosis, prescription, notes);
+
+CREATE TRIGGER visits_search BEFORE INSERT OR UPDATE ON visits
+  FOR EACH ROW EXECUTE FUNCTION visits_search_update();
+
+CREATE INDEX idx_visits_search ON visits USING gin(search);
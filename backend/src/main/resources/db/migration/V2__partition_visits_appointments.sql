@@ -0,0 +1,104 @@
+-- Monthly range partitioning for the append-only history tables.
+-- Every unique constraint on a partitioned table must contain the partition key,
+-- so the primary keys become (id, visit_at) / (id, scheduled_at). As a result
+-- visits.appointment_id can no longer be a foreign key to appointments(id).
+
+-- Creates (or returns) the partition of `parent` holding the month of `month`.
+-- Rows for that month that landed in the default partition are moved over.
+CREATE OR REPLACE FUNCTION create_monthly_partition(parent TEXT, key_column TEXT, month DATE) RETURNS TEXT AS $$
+DECLARE
+  start_at DATE := date_trunc('month', month)::date;
+  end_at DATE := (date_trunc('month', month) + INTERVAL '1 month')::date;
+  part TEXT := parent || '_' || to_char(start_at, 'YYYY_MM');
+  default_part TEXT := parent || '_default';
+  cols TEXT;
+  stray BOOLEAN;
+BEGIN
+  IF to_regclass(part) IS NOT NULL THEN
+    RETURN part;
+  END IF;
+
+  EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE %I >= %L AND %I < %L)',
+                 default_part, key_column, start_at, key_column, end_at) INTO stray;
+
+  IF NOT stray THEN
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)', part, parent, start_at, end_at);
+    RETURN part;
+  END IF;
+
+  SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO cols
+    FROM pg_attribute
+   WHERE attrelid = parent::regclass AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+
+  EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING GENERATED)', part, parent);
+  EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING %s) INSERT INTO %I (%s) SELECT %s FROM moved',
+                 default_part, key_column, start_at, key_column, end_at, cols, part, cols, cols);
+  EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', parent, part, start_at, end_at);
+  RETURN part;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Appointments
+ALTER TABLE visits DROP CONSTRAINT IF EXISTS visits_appointment_id_fkey;
+ALTER TABLE appointments RENAME TO appointments_unpartitioned;
+ALTER SEQUENCE appointments_id_seq OWNED BY NONE;
+
+CREATE TABLE appointments(
+  id BIGINT NOT NULL DEFAULT nextval('appointments_id_seq'),
+  patient_id BIGINT REFERENCES patients(id) ON DELETE CASCADE,
+  doctor_id BIGINT REFERENCES doctors(id) ON DELETE SET NULL,
+  scheduled_at TIMESTAMP NOT NULL,
+  status VARCHAR(32) NOT NULL DEFAULT 'SCHEDULED',
+  reason TEXT,
+  created_by BIGINT REFERENCES users(id) ON DELETE SET NULL,
+  PRIMARY KEY (id, scheduled_at)
+) PARTITION BY RANGE (scheduled_at);
+
+ALTER SEQUENCE appointments_id_seq OWNED BY appointments.id;
+CREATE TABLE appointments_default PARTITION OF appointments DEFAULT;
+
+SELECT create_monthly_partition('appointments', 'scheduled_at', m::date)
+  FROM generate_series(
+         date_trunc('month', LEAST(COALESCE((SELECT MIN(scheduled_at) FROM appointments_unpartitioned), NOW()), NOW())),
+         date_trunc('month', NOW()) + INTERVAL '3 months',
+         INTERVAL '1 month') AS m;
+
+INSERT INTO appointments(id, patient_id, doctor_id, scheduled_at, status, reason, created_by)
+SELECT id, patient_id, doctor_id, scheduled_at, status, reason, created_by FROM appointments_unpartitioned;
+
+-- Visits
+ALTER TABLE visits RENAME TO visits_unpartitioned;
+ALTER SEQUENCE visits_id_seq OWNED BY NONE;
+
+CREATE TABLE visits(
+  id BIGINT NOT NULL DEFAULT nextval('visits_id_seq'),
+  patient_id BIGINT REFERENCES patients(id) ON DELETE CASCADE,
+  doctor_id BIGINT REFERENCES doctors(id) ON DELETE SET NULL,
+  appointment_id BIGINT,
+  visit_at TIMESTAMP NOT NULL DEFAULT NOW(),
+  notes TEXT,
+  diagnosis TEXT,
+  prescription TEXT,
+  PRIMARY KEY (id, visit_at)
+) PARTITION BY RANGE (visit_at);
+
+ALTER SEQUENCE visits_id_seq OWNED BY visits.id;
+CREATE TABLE visits_default PARTITION OF visits DEFAULT;
+
+SELECT create_monthly_partition('visits', 'visit_at', m::date)
+  FROM generate_series(
+         date_trunc('month', LEAST(COALESCE((SELECT MIN(visit_at) FROM visits_unpartitioned), NOW()), NOW())),
+         date_trunc('month', NOW()) + INTERVAL '3 months',
+         INTERVAL '1 month') AS m;
+
+INSERT INTO visits(id, patient_id, doctor_id, appointment_id, visit_at, notes, diagnosis, prescription)
+SELECT id, patient_id, doctor_id, appointment_id, visit_at, notes, diagnosis, prescription FROM visits_unpartitioned;
+
+DROP TABLE visits_unpartitioned;
+DROP TABLE appointments_unpartitioned;
+
+-- History lookups are always per patient or per doctor, newest first
+CREATE INDEX idx_visits_patient_visit_at ON visits(patient_id, visit_at DESC);
+CREATE INDEX idx_visits_doctor_visit_at ON visits(doctor_id, visit_at DESC);
+CREATE INDEX idx_appointments_patient_scheduled_at ON appointments(patient_id, scheduled_at);
+CREATE INDEX idx_appointments_doctor_scheduled_at ON appointments(doctor_id, scheduled_at);
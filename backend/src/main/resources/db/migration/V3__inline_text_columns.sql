@@ -0,0 +1,40 @@
+-- The text columns used to be mapped with @Lob, which made Hibernate write each value
+-- as a PostgreSQL large object and keep only its OID in the column. They are plain
+-- strings now, so inline the stored large objects and release them.
+
+CREATE TEMP TABLE lob_refs(lob OID PRIMARY KEY) ON COMMIT DROP;
+
+CREATE FUNCTION pg_temp.lob_oid(val TEXT) RETURNS OID AS $$
+  SELECT CASE WHEN val ~ '^[0-9]{1,10}$' THEN
+           CASE WHEN val::BIGINT < 4294967296 THEN
+             (SELECT oid FROM pg_largeobject_metadata WHERE oid = val::BIGINT::OID)
+           END
+         END
+$$ LANGUAGE sql STABLE;
+
+CREATE FUNCTION pg_temp.inline_lob(val TEXT) RETURNS TEXT AS $$
+  SELECT COALESCE((SELECT convert_from(lo_get(pg_temp.lob_oid(val)), 'UTF8')), val)
+$$ LANGUAGE sql;
+
+INSERT INTO lob_refs
+SELECT DISTINCT lob FROM (
+  SELECT pg_temp.lob_oid(notes) FROM visits
+  UNION ALL SELECT pg_temp.lob_oid(diagnosis) FROM visits
+  UNION ALL SELECT pg_temp.lob_oid(prescription) FROM visits
+  UNION ALL SELECT pg_temp.lob_oid(reason) FROM appointments
+  UNION ALL SELECT pg_temp.lob_oid(address) FROM patients
+) refs(lob)
+WHERE lob IS NOT NULL;
+
+UPDATE visits SET notes = pg_temp.inline_lob(notes),
+                  diagnosis = pg_temp.inline_lob(diagnosis),
+                  prescription = pg_temp.inline_lob(prescription)
+ WHERE pg_temp.lob_oid(notes) IS NOT NULL
+    OR pg_temp.lob_oid(diagnosis) IS NOT NULL
+    OR pg_temp.lob_oid(prescription) IS NOT NULL;
+
+UPDATE appointments SET reason = pg_temp.inline_lob(reason) WHERE pg_temp.lob_oid(reason) IS NOT NULL;
+
+UPDATE patients SET address = pg_temp.inline_lob(address) WHERE pg_temp.lob_oid(address) IS NOT NULL;
+
+SELECT lo_unlink(lob) FROM lob_refs;
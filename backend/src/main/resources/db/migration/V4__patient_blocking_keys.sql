@@ -0,0 +1,9 @@
+-- Blocking keys for duplicate-patient detection. Keys are computed by the application
+-- (normalized phone, phonetic name codes, DOB combinations) and backfilled on first start.
+CREATE TABLE patient_blocking_keys(
+  block_key VARCHAR(64) NOT NULL,
+  patient_id BIGINT NOT NULL REFERENCES patients(id) ON DELETE CASCADE,
+  PRIMARY KEY (block_key, patient_id)
+);
+
+CREATE INDEX idx_patient_blocking_keys_patient ON patient_blocking_keys(patient_id);
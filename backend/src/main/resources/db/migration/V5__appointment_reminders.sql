@@ -0,0 +1,7 @@
+-- The scheduled time an appointment's reminder was sent for. Claiming a reminder sets it
+-- to scheduled_at, so each reminder goes out once across instances and a reschedule
+-- makes the appointment due again.
+ALTER TABLE appointments ADD COLUMN reminded_for TIMESTAMP;
+
+-- Loads the reminder horizon without scanning completed and cancelled appointments
+CREATE INDEX idx_appointments_scheduled_pending ON appointments(scheduled_at) WHERE status = 'SCHEDULED';
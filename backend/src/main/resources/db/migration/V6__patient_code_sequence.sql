@@ -0,0 +1,2 @@
+-- Numbers for server-generated patient codes; nodes reserve them in blocks
+CREATE SEQUENCE IF NOT EXISTS patient_code_seq;
@@ -0,0 +1,8 @@
+-- Deleting a patient or doctor only stamps deleted_at; SoftDeletePurger removes the
+-- row and its appointments, visits and schedule later, in small batches
+ALTER TABLE patients ADD COLUMN deleted_at TIMESTAMP;
+ALTER TABLE doctors ADD COLUMN deleted_at TIMESTAMP;
+
+-- Deleted rows are few, so queries that hide them and the purger stay on these small indexes
+CREATE INDEX idx_patients_deleted ON patients(id) WHERE deleted_at IS NOT NULL;
+CREATE INDEX idx_doctors_deleted ON doctors(id) WHERE deleted_at IS NOT NULL;
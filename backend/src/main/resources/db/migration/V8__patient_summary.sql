@@ -0,0 +1,12 @@
+-- Per-patient read model kept by PatientSummaries, so lists and reports join one
+-- narrow row instead of aggregating visits and appointments per patient.
+-- Filled on the first start after this migration.
+CREATE TABLE patient_summary(
+  patient_id BIGINT PRIMARY KEY REFERENCES patients(id) ON DELETE CASCADE,
+  visit_count BIGINT NOT NULL DEFAULT 0,
+  last_visit_at TIMESTAMP,
+  next_appointment_at TIMESTAMP
+);
+
+-- Finds rows whose next appointment has passed and needs moving on
+CREATE INDEX idx_patient_summary_next_appointment ON patient_summary(next_appointment_at);
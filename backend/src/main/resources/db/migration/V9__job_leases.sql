@@ -0,0 +1,12 @@
+-- Singleton background jobs, see JobLeases. The owning instance holds a session-level
+-- advisory lock for the job and heartbeats its row; token grows with every change of
+-- owner and fences writes of an owner that lost the lock without noticing.
+CREATE TABLE job_leases(
+  name VARCHAR(100) PRIMARY KEY,
+  owner VARCHAR(255),
+  owner_pid INTEGER,
+  token BIGINT NOT NULL DEFAULT 0,
+  acquired_at TIMESTAMP,
+  heartbeat_at TIMESTAMP,
+  last_run_at TIMESTAMP
+);
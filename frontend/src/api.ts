@@ -4,6 +4,11 @@ export const api = axios.create({
   baseURL: '/api',
 })
 
+// Deployments serving one clinic of a multi-clinic backend set VITE_CLINIC_ID; the
+// clinic then travels in the token, the header only matters for login
+const clinic = import.meta.env.VITE_CLINIC_ID
+if (clinic) api.defaults.headers.common['X-Clinic-Id'] = clinic
+
 export function setAuthToken(token: string | null) {
   if (token) api.defaults.headers.common['Authorization'] = `Bearer ${token}`
   else delete api.defaults.headers.common['Authorization']
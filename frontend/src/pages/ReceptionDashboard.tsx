@@ -139,7 +139,15 @@ export default function ReceptionDashboard() {
         })
         setEditingPatient(null)
       } else {
-        await api.post('/reception/patients', patientForm)
+        try {
+          await api.post('/reception/patients', patientForm)
+        } catch (error: any) {
+          const matches = error?.response?.status === 409 ? error.response.data.matches : null
+          if (!matches) throw error
+          const names = matches.map((m: any) => `${m.patient.fullName} (${m.patient.code})`).join('\n')
+          if (!confirm(`Possible duplicate of:\n${names}\n\nRegister anyway?`)) return
+          await api.post('/reception/patients?force=true', patientForm)
+        }
       }
       setPatientForm({ code: '', fullName: '', dob: '', phone: '', address: '' })
       loadData()
@@ -430,10 +438,9 @@ export default function ReceptionDashboard() {
             <form className="grid grid-cols-1 md:grid-cols-2 gap-4" onSubmit={handlePatientSubmit}>
               <input
                 className="input"
-                placeholder="Patient Code"
+                placeholder="Patient Code (blank to generate)"
                 value={patientForm.code}
                 onChange={e => setPatientForm({ ...patientForm, code: e.target.value })}
-                required
                 disabled={!!editingPatient}
               />
               <input
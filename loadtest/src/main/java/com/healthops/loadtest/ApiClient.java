@@ -0,0 +1,134 @@
+package com.healthops.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Thin HTTP client for the HealthOps API. Every call is timed and recorded under
+ * an endpoint label with path variables templated out, e.g.
+ * {@code GET /api/reception/doctors/{id}/availability}.
+ */
+public class ApiClient {
+  private final HttpClient http;
+  private final String baseUrl;
+  private final LatencyRecorder recorder;
+  private final ObjectMapper json = new ObjectMapper();
+
+  public ApiClient(String baseUrl, LatencyRecorder recorder) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.recorder = recorder;
+    this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+  }
+
+  public String login(String email, String password) {
+    JsonNode body = send("POST /api/auth/login", null, "/api/auth/login", "POST", Map.of("email", email, "password", password));
+    if (body == null || !body.hasNonNull("token")) {
+      throw new IllegalStateException("Login failed for " + email);
+    }
+    return body.get("token").asText();
+  }
+
+  public JsonNode get(String label, String token, String path) {
+    return send(label, token, path, "GET", null);
+  }
+
+  public JsonNode post(String label, String token, String path, Object payload) {
+    return send(label, token, path, "POST", payload);
+  }
+
+  /** Reads the whole body without parsing it and returns its size, or -1 on failure. */
+  public long download(String label, String token, String path) {
+    long start = System.nanoTime();
+    boolean ok = false;
+    long bytes = -1;
+    try {
+      HttpResponse<InputStream> response = http.send(request(token, path, "GET", null), HttpResponse.BodyHandlers.ofInputStream());
+      try (InputStream in = response.body()) {
+        bytes = in.transferTo(OutputSink.INSTANCE);
+      }
+      ok = response.statusCode() / 100 == 2;
+    } catch (IOException e) {
+      // counted as an error below
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      recorder.record(label, System.nanoTime() - start, ok);
+    }
+    return ok ? bytes : -1;
+  }
+
+  /** Returns the raw body requested with the given Accept header, or null on failure. */
+  public byte[] fetch(String label, String token, String path, String accept) {
+    long start = System.nanoTime();
+    boolean ok = false;
+    try {
+      HttpResponse<byte[]> response = http.send(request(token, path, "GET", null, accept), HttpResponse.BodyHandlers.ofByteArray());
+      ok = response.statusCode() / 100 == 2;
+      return ok ? response.body() : null;
+    } catch (IOException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      recorder.record(label, System.nanoTime() - start, ok);
+    }
+  }
+
+  private JsonNode send(String label, String token, String path, String method, Object payload) {
+    long start = System.nanoTime();
+    boolean ok = false;
+    try {
+      HttpResponse<byte[]> response = http.send(request(token, path, method, payload), HttpResponse.BodyHandlers.ofByteArray());
+      ok = response.statusCode() / 100 == 2;
+      if (!ok || response.body().length == 0) {
+        return null;
+      }
+      return json.readTree(response.body());
+    } catch (IOException e) {
+      ok = false;
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      recorder.record(label, System.nanoTime() - start, ok);
+    }
+  }
+
+  private HttpRequest request(String token, String path, String method, Object payload) throws IOException {
+    return request(token, path, method, payload, "application/json");
+  }
+
+  private HttpRequest request(String token, String path, String method, Object payload, String accept) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+        .timeout(Duration.ofSeconds(60))
+        .header("Accept", accept);
+    if (token != null) {
+      builder.header("Authorization", "Bearer " + token);
+    }
+    if (payload != null) {
+      builder.header("Content-Type", "application/json")
+          .method(method, HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(payload)));
+    } else {
+      builder.method(method, HttpRequest.BodyPublishers.noBody());
+    }
+    return builder.build();
+  }
+
+  private static final class OutputSink extends java.io.OutputStream {
+    static final OutputSink INSTANCE = new OutputSink();
+
+    @Override public void write(int b) {}
+    @Override public void write(byte[] b, int off, int len) {}
+  }
+}
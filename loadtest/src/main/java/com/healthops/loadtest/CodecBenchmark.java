@@ -0,0 +1,152 @@
+package com.healthops.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares JSON, CBOR and Smile for the large list endpoints: payload size (raw
+ * and gzipped), median request time, and the median time the client takes to
+ * decode the body and to encode it again. Run against a backend with a
+ * realistic number of appointments and visits, e.g. after a load test run.
+ */
+public class CodecBenchmark {
+  static final String USAGE = """
+      Usage: java -cp healthops-loadtest.jar com.healthops.loadtest.CodecBenchmark [options]
+        --base-url URL        API base URL (default http://localhost:8080)
+        --iterations N        measured rounds per endpoint and format (default 30)
+        --warmup N            unrecorded rounds first (default 10)
+        --label NAME          result file name (default "codecs")
+        --out DIR             directory for result files (default results)
+        --reception EMAIL:PASS
+                              account to log in with (default: the seeded receptionist)
+      """;
+
+  private static final String HEADER =
+      "endpoint\tformat\tbytes\tgzip_bytes\tsize_vs_json\trequest_p50_ms\tdecode_p50_ms\tencode_p50_ms";
+  private static final List<String> ENDPOINTS = List.of("/api/reception/appointments", "/api/reception/visits");
+
+  private record Format(String name, String mediaType, ObjectMapper mapper) {}
+
+  private record Row(String endpoint, String format, int bytes, int gzipBytes, double sizeVsJson,
+                     double requestMs, double decodeMs, double encodeMs) {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = new HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        System.err.print(USAGE);
+        System.exit(2);
+        return;
+      }
+      opts.put(args[i].substring(2), args[++i]);
+    }
+    String baseUrl = opts.getOrDefault("base-url", "http://localhost:8080");
+    int iterations = Integer.parseInt(opts.getOrDefault("iterations", "30"));
+    int warmup = Integer.parseInt(opts.getOrDefault("warmup", "10"));
+    String[] account = opts.getOrDefault("reception", "reception@healthops.com:Reception@123").split(":", 2);
+
+    List<Format> formats = List.of(
+        new Format("json", "application/json", new ObjectMapper()),
+        new Format("cbor", "application/cbor", new ObjectMapper(new CBORFactory())),
+        new Format("smile", "application/x-jackson-smile", new ObjectMapper(new SmileFactory())));
+
+    LatencyRecorder recorder = new LatencyRecorder();
+    ApiClient api = new ApiClient(baseUrl, recorder);
+    String token = api.login(account[0], account[1]);
+
+    List<Row> rows = new ArrayList<>();
+    for (String path : ENDPOINTS) {
+      int jsonBytes = 0;
+      int jsonItems = -1;
+      for (Format format : formats) {
+        String label = "GET " + path + " [" + format.name() + "]";
+        long[] decode = new long[iterations];
+        long[] encode = new long[iterations];
+        byte[] body = null;
+        Object decoded = null;
+        for (int i = -warmup; i < iterations; i++) {
+          if (i == 0) {
+            recorder.reset();
+          }
+          body = api.fetch(label, token, path, format.mediaType());
+          if (body == null) {
+            throw new IllegalStateException(label + " failed");
+          }
+          long start = System.nanoTime();
+          decoded = format.mapper().readValue(body, Object.class);
+          long mid = System.nanoTime();
+          format.mapper().writeValueAsBytes(decoded);
+          long end = System.nanoTime();
+          if (i >= 0) {
+            decode[i] = mid - start;
+            encode[i] = end - mid;
+          }
+        }
+        int items = decoded instanceof List<?> list ? list.size() : -1;
+        if (format.name().equals("json")) {
+          jsonBytes = body.length;
+          jsonItems = items;
+        } else if (items != jsonItems) {
+          System.err.printf("%s decoded %d items, JSON had %d%n", label, items, jsonItems);
+        }
+        double requestMs = recorder.summarize(1).get(0).p50Ms();
+        rows.add(new Row(path, format.name(), body.length, gzipped(body),
+            jsonBytes > 0 ? (double) body.length / jsonBytes : 1.0,
+            requestMs, median(decode) / 1e6, median(encode) / 1e6));
+      }
+    }
+
+    System.out.print(table(rows));
+    Path dir = Path.of(opts.getOrDefault("out", "results"));
+    Files.createDirectories(dir);
+    Path file = dir.resolve(opts.getOrDefault("label", "codecs") + ".tsv");
+    StringBuilder out = new StringBuilder();
+    out.append("# iterations=").append(iterations).append(" warmup=").append(warmup).append('\n');
+    out.append(HEADER).append('\n');
+    for (Row r : rows) {
+      out.append(String.format(Locale.ROOT, "%s\t%s\t%d\t%d\t%.3f\t%.2f\t%.2f\t%.2f%n",
+          r.endpoint(), r.format(), r.bytes(), r.gzipBytes(), r.sizeVsJson(), r.requestMs(), r.decodeMs(), r.encodeMs()));
+    }
+    Files.writeString(file, out);
+    System.out.println("Results written to " + file);
+  }
+
+  private static String table(List<Row> rows) {
+    int width = rows.stream().mapToInt(r -> r.endpoint().length()).max().orElse(8);
+    StringBuilder out = new StringBuilder();
+    out.append(String.format(Locale.ROOT, "%-" + width + "s %-6s %9s %9s %7s %11s %10s %10s%n",
+        "endpoint", "format", "bytes", "gzip", "vs json", "request ms", "decode ms", "encode ms"));
+    for (Row r : rows) {
+      out.append(String.format(Locale.ROOT, "%-" + width + "s %-6s %9d %9d %7.2f %11.2f %10.2f %10.2f%n",
+          r.endpoint(), r.format(), r.bytes(), r.gzipBytes(), r.sizeVsJson(), r.requestMs(), r.decodeMs(), r.encodeMs()));
+    }
+    return out.toString();
+  }
+
+  private static int gzipped(byte[] body) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+      gz.write(body);
+    }
+    return out.size();
+  }
+
+  private static double median(long[] samples) {
+    long[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
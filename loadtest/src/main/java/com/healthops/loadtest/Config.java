@@ -0,0 +1,93 @@
+package com.healthops.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Command-line options; every option has a default suitable for a local docker-compose stack. */
+public record Config(String baseUrl, int users, Duration warmup, Duration duration, long thinkMillis,
+                     Map<Scenario, Integer> mix, int patients, String label, String outDir, long seed,
+                     String adminEmail, String adminPassword,
+                     String receptionEmail, String receptionPassword,
+                     String doctorEmail, String doctorPassword) {
+
+  static final String USAGE = """
+      Usage: java -jar healthops-loadtest.jar [options]
+        --base-url URL        API base URL (default http://localhost:8080)
+        --users N             concurrent virtual users (default 10)
+        --warmup SECONDS      unrecorded warm-up phase (default 15)
+        --duration SECONDS    recorded phase (default 60)
+        --think-ms MS         pause between scenarios per user (default 100)
+        --mix k=w,...         scenario weights, keys: booking, search, dashboard, visit-entry, csv
+                              (default booking=30,search=25,dashboard=25,visit-entry=15,csv=5)
+        --patients N          patients created during setup (default 50)
+        --label NAME          run label used in the result file name (default "run")
+        --out DIR             directory for result files (default results)
+        --seed N              random seed (default 42)
+        --admin EMAIL:PASS, --reception EMAIL:PASS, --doctor EMAIL:PASS
+                              accounts to log in with (default: the seeded demo accounts)
+      """;
+
+  public static Config parse(String[] args) {
+    Map<String, String> opts = new java.util.HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("-h") || arg.equals("--help")) {
+        throw new IllegalArgumentException("");
+      }
+      if (!arg.startsWith("--") || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+      opts.put(arg.substring(2), args[++i]);
+    }
+
+    String[] admin = account(opts.getOrDefault("admin", "admin@healthops.com:Admin@123"));
+    String[] reception = account(opts.getOrDefault("reception", "reception@healthops.com:Reception@123"));
+    String[] doctor = account(opts.getOrDefault("doctor", "doc1@healthops.com:Doctor@123"));
+
+    return new Config(
+        opts.getOrDefault("base-url", "http://localhost:8080"),
+        Integer.parseInt(opts.getOrDefault("users", "10")),
+        Duration.ofSeconds(Long.parseLong(opts.getOrDefault("warmup", "15"))),
+        Duration.ofSeconds(Long.parseLong(opts.getOrDefault("duration", "60"))),
+        Long.parseLong(opts.getOrDefault("think-ms", "100")),
+        mix(opts.get("mix")),
+        Integer.parseInt(opts.getOrDefault("patients", "50")),
+        opts.getOrDefault("label", "run"),
+        opts.getOrDefault("out", "results"),
+        Long.parseLong(opts.getOrDefault("seed", "42")),
+        admin[0], admin[1], reception[0], reception[1], doctor[0], doctor[1]);
+  }
+
+  private static Map<Scenario, Integer> mix(String spec) {
+    Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+    if (spec == null) {
+      for (Scenario s : Scenario.values()) {
+        weights.put(s, s.defaultWeight());
+      }
+      return weights;
+    }
+    for (String part : spec.split(",")) {
+      String[] kv = part.trim().split("=");
+      if (kv.length != 2) {
+        throw new IllegalArgumentException("Bad --mix entry: " + part);
+      }
+      int weight = Integer.parseInt(kv[1].trim());
+      if (weight > 0) {
+        weights.put(Scenario.byKey(kv[0].trim()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("--mix selects no scenarios");
+    }
+    return weights;
+  }
+
+  private static String[] account(String spec) {
+    int idx = spec.indexOf(':');
+    if (idx <= 0) {
+      throw new IllegalArgumentException("Accounts must be EMAIL:PASSWORD, got " + spec);
+    }
+    return new String[] {spec.substring(0, idx), spec.substring(idx + 1)};
+  }
+}
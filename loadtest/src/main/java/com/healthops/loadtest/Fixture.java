@@ -0,0 +1,44 @@
+package com.healthops.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens and reference data shared by all virtual users. Patients are created
+ * once per run under a run-specific code prefix so repeated runs do not collide.
+ */
+public record Fixture(String adminToken, String receptionToken, String doctorToken,
+                      long doctorId, List<Long> patientIds, String codePrefix) {
+
+  public static Fixture create(ApiClient api, Config config) {
+    String admin = api.login(config.adminEmail(), config.adminPassword());
+    String reception = api.login(config.receptionEmail(), config.receptionPassword());
+    String doctor = api.login(config.doctorEmail(), config.doctorPassword());
+
+    JsonNode profile = api.get("setup", doctor, "/api/doctor/profile");
+    if (profile == null) {
+      throw new IllegalStateException("No doctor profile for " + config.doctorEmail());
+    }
+
+    String prefix = "LT" + Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+    List<Long> patients = new ArrayList<>();
+    // Names, birth dates and phones repeat between runs, which the backend rejects as likely duplicates unless forced
+    for (int i = 0; i < config.patients(); i++) {
+      JsonNode created = api.post("setup", reception, "/api/reception/patients?force=true", Map.of(
+          "code", prefix + "-" + i,
+          "fullName", Names.fullName(i),
+          "dob", (1950 + i % 50) + "-0" + (1 + i % 9) + "-1" + (i % 9),
+          "phone", String.format("555%07d", i)));
+      if (created != null && created.hasNonNull("id")) {
+        patients.add(created.get("id").asLong());
+      }
+    }
+    if (patients.isEmpty()) {
+      throw new IllegalStateException("Could not create any load-test patients");
+    }
+    return new Fixture(admin, reception, doctor, profile.get("id").asLong(), List.copyOf(patients), prefix);
+  }
+}
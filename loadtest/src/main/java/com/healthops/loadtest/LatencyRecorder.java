@@ -0,0 +1,74 @@
+package com.healthops.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Collects raw latencies per endpoint label; percentiles are computed once at the end. */
+public class LatencyRecorder {
+
+  public record EndpointStats(String endpoint, int count, int errors, double throughput,
+                              double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+
+  private static final class Samples {
+    private long[] nanos = new long[1024];
+    private int size;
+    private int errors;
+
+    synchronized void add(long latencyNanos, boolean ok) {
+      if (size == nanos.length) {
+        nanos = Arrays.copyOf(nanos, size * 2);
+      }
+      nanos[size++] = latencyNanos;
+      if (!ok) {
+        errors++;
+      }
+    }
+
+    synchronized long[] sorted() {
+      long[] copy = Arrays.copyOf(nanos, size);
+      Arrays.sort(copy);
+      return copy;
+    }
+
+    synchronized int errors() { return errors; }
+  }
+
+  private volatile Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+  public void record(String endpoint, long latencyNanos, boolean ok) {
+    samples.computeIfAbsent(endpoint, k -> new Samples()).add(latencyNanos, ok);
+  }
+
+  /** Drops everything recorded so far, e.g. after the warm-up phase. */
+  public void reset() {
+    samples = new ConcurrentHashMap<>();
+  }
+
+  public List<EndpointStats> summarize(double elapsedSeconds) {
+    List<EndpointStats> stats = new ArrayList<>();
+    new TreeMap<>(samples).forEach((endpoint, s) -> {
+      long[] sorted = s.sorted();
+      if (sorted.length == 0) {
+        return;
+      }
+      stats.add(new EndpointStats(endpoint, sorted.length, s.errors(), sorted.length / elapsedSeconds,
+          millis(percentile(sorted, 50)), millis(percentile(sorted, 95)), millis(percentile(sorted, 99)),
+          millis(sorted[sorted.length - 1])));
+    });
+    return stats;
+  }
+
+  // Nearest-rank percentile
+  static long percentile(long[] sorted, double p) {
+    int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
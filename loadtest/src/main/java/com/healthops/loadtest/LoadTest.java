@@ -0,0 +1,95 @@
+package com.healthops.loadtest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load generator: each virtual user repeatedly picks a scenario by
+ * weight, runs it, then sleeps for the think time. A warm-up phase runs the same
+ * mix unrecorded so JIT and connection pools settle before measurement starts.
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    Config config;
+    try {
+      config = Config.parse(args);
+    } catch (IllegalArgumentException e) {
+      if (!e.getMessage().isEmpty()) {
+        System.err.println(e.getMessage());
+      }
+      System.err.print(Config.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    LatencyRecorder recorder = new LatencyRecorder();
+    ApiClient api = new ApiClient(config.baseUrl(), recorder);
+
+    System.out.printf("Setting up against %s (%d patients)...%n", config.baseUrl(), config.patients());
+    Fixture fixture = Fixture.create(api, config);
+
+    if (!config.warmup().isZero()) {
+      System.out.printf("Warm-up: %d users for %ds%n", config.users(), config.warmup().toSeconds());
+      runPhase(api, fixture, config, config.warmup().toMillis(), config.seed() ^ 0x5DEECE66DL);
+    }
+    recorder.reset();
+
+    System.out.printf("Measuring: %d users for %ds%n", config.users(), config.duration().toSeconds());
+    long start = System.nanoTime();
+    runPhase(api, fixture, config, config.duration().toMillis(), config.seed());
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    List<LatencyRecorder.EndpointStats> stats = recorder.summarize(elapsed);
+    System.out.println();
+    System.out.print(Report.table(stats, elapsed));
+    Path file = Report.writeTsv(Path.of(config.outDir()), config.label(), config, stats);
+    System.out.println("Results written to " + file);
+  }
+
+  private static void runPhase(ApiClient api, Fixture fixture, Config config, long millis, long seed)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    Scenario[] wheel = wheel(config.mix());
+    CountDownLatch done = new CountDownLatch(config.users());
+    SplittableRandom root = new SplittableRandom(seed);
+
+    for (int i = 0; i < config.users(); i++) {
+      SplittableRandom rnd = root.split();
+      Thread t = new Thread(() -> {
+        try {
+          while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            wheel[rnd.nextInt(wheel.length)].run(api, fixture, rnd);
+            if (config.thinkMillis() > 0) {
+              Thread.sleep(config.thinkMillis());
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }, "vu-" + i);
+      t.setDaemon(true);
+      t.start();
+    }
+    // Requests in flight at the deadline are allowed to finish and are still recorded
+    done.await();
+  }
+
+  // One slot per unit of weight, so a uniform pick gives the weighted mix
+  private static Scenario[] wheel(Map<Scenario, Integer> mix) {
+    List<Scenario> slots = new ArrayList<>();
+    mix.forEach((scenario, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        slots.add(scenario);
+      }
+    });
+    return slots.toArray(new Scenario[0]);
+  }
+}
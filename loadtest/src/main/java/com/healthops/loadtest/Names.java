@@ -0,0 +1,17 @@
+package com.healthops.loadtest;
+
+final class Names {
+  private static final String[] FIRST = {"Aarav", "Maya", "John", "Priya", "Liam", "Sara", "Omar", "Chen", "Elena", "Ravi"};
+  private static final String[] LAST = {"Sharma", "Smith", "Patel", "Garcia", "Khan", "Nguyen", "Mueller", "Rossi", "Kim", "Singh"};
+
+  private Names() {}
+
+  static String fullName(int i) {
+    return FIRST[i % FIRST.length] + " " + LAST[(i / FIRST.length) % LAST.length];
+  }
+
+  static String searchFragment(int i) {
+    String last = LAST[i % LAST.length];
+    return last.substring(0, Math.min(4, last.length())).toLowerCase();
+  }
+}
@@ -0,0 +1,57 @@
+package com.healthops.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Renders results as a console table and as a TSV file. The TSV has one row per
+ * endpoint sorted by name with fixed columns, so two runs can be compared with
+ * {@code diff} or pasted side by side into a spreadsheet.
+ */
+public final class Report {
+  private static final String HEADER = "endpoint\tcount\terrors\trps\tp50_ms\tp95_ms\tp99_ms\tmax_ms";
+
+  private Report() {}
+
+  public static String table(List<LatencyRecorder.EndpointStats> stats, double elapsedSeconds) {
+    int width = Math.max(8, stats.stream().mapToInt(s -> s.endpoint().length()).max().orElse(0));
+    StringBuilder out = new StringBuilder();
+    out.append(String.format(Locale.ROOT, "%-" + width + "s %8s %7s %8s %9s %9s %9s %9s%n",
+        "endpoint", "count", "errors", "rps", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+    int total = 0;
+    int errors = 0;
+    for (LatencyRecorder.EndpointStats s : stats) {
+      out.append(String.format(Locale.ROOT, "%-" + width + "s %8d %7d %8.2f %9.1f %9.1f %9.1f %9.1f%n",
+          s.endpoint(), s.count(), s.errors(), s.throughput(), s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs()));
+      total += s.count();
+      errors += s.errors();
+    }
+    out.append(String.format(Locale.ROOT, "%ntotal: %d requests, %d errors, %.2f req/s over %.1f s%n",
+        total, errors, total / elapsedSeconds, elapsedSeconds));
+    return out.toString();
+  }
+
+  public static Path writeTsv(Path dir, String label, Config config, List<LatencyRecorder.EndpointStats> stats) throws IOException {
+    Files.createDirectories(dir);
+    Path file = dir.resolve(label + ".tsv");
+    String mix = config.mix().entrySet().stream()
+        .map(e -> e.getKey().key() + "=" + e.getValue())
+        .collect(Collectors.joining(","));
+    StringBuilder out = new StringBuilder();
+    out.append("# users=").append(config.users())
+        .append(" duration_s=").append(config.duration().toSeconds())
+        .append(" think_ms=").append(config.thinkMillis())
+        .append(" mix=").append(mix).append('\n');
+    out.append(HEADER).append('\n');
+    for (LatencyRecorder.EndpointStats s : stats) {
+      out.append(String.format(Locale.ROOT, "%s\t%d\t%d\t%.2f\t%.1f\t%.1f\t%.1f\t%.1f%n",
+          s.endpoint(), s.count(), s.errors(), s.throughput(), s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs()));
+    }
+    Files.writeString(file, out);
+    return file;
+  }
+}
@@ -0,0 +1,98 @@
+package com.healthops.loadtest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/** One user interaction, issuing the same calls the dashboards and the chatbot make. */
+public enum Scenario {
+
+  BOOKING("booking", 30) {
+    @Override
+    void run(ApiClient api, Fixture f, RandomGenerator rnd) {
+      String t = f.receptionToken();
+      api.get("GET /api/reception/doctors", t, "/api/reception/doctors");
+      api.get("GET /api/reception/doctors/{id}/availability", t, "/api/reception/doctors/" + f.doctorId() + "/availability");
+      api.get("GET /api/reception/doctors/{id}/holidays", t, "/api/reception/doctors/" + f.doctorId() + "/holidays");
+      Map<String, Object> body = new HashMap<>();
+      body.put("patientId", pick(f, rnd));
+      body.put("doctorId", f.doctorId());
+      body.put("scheduledAt", Instant.now().plus(1 + rnd.nextInt(60), ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString());
+      body.put("reason", "Load test booking");
+      api.post("POST /api/reception/appointments", t, "/api/reception/appointments", body);
+    }
+  },
+
+  SEARCH("search", 25) {
+    @Override
+    void run(ApiClient api, Fixture f, RandomGenerator rnd) {
+      String fragment = Names.searchFragment(rnd.nextInt(100));
+      api.get("GET /api/reception/patients/search", f.receptionToken(), "/api/reception/patients/search?query=" + fragment);
+      api.get("GET /api/reception/appointments/search", f.receptionToken(), "/api/reception/appointments/search?query=" + f.codePrefix());
+    }
+  },
+
+  DASHBOARD("dashboard", 25) {
+    @Override
+    void run(ApiClient api, Fixture f, RandomGenerator rnd) {
+      switch (rnd.nextInt(3)) {
+        case 0 -> api.get("GET /api/reception/dashboard/stats", f.receptionToken(), "/api/reception/dashboard/stats");
+        case 1 -> api.get("GET /api/doctor/dashboard/stats", f.doctorToken(), "/api/doctor/dashboard/stats");
+        default -> api.get("GET /api/admin/dashboard/stats", f.adminToken(), "/api/admin/dashboard/stats");
+      }
+    }
+  },
+
+  VISIT_ENTRY("visit-entry", 15) {
+    @Override
+    void run(ApiClient api, Fixture f, RandomGenerator rnd) {
+      String t = f.doctorToken();
+      long patientId = pick(f, rnd);
+      api.get("GET /api/doctor/visits/patient/{id}/summary", t, "/api/doctor/visits/patient/" + patientId + "/summary");
+      api.post("POST /api/doctor/visits", t, "/api/doctor/visits", Map.of(
+          "patientId", patientId,
+          "notes", "Load test visit. Patient reports mild symptoms for three days.",
+          "diagnosis", "Viral upper respiratory infection",
+          "prescription", "Paracetamol 500mg twice daily"));
+    }
+  },
+
+  CSV("csv", 5) {
+    @Override
+    void run(ApiClient api, Fixture f, RandomGenerator rnd) {
+      if (rnd.nextBoolean()) {
+        api.download("GET /api/reception/reports/appointments.csv", f.receptionToken(), "/api/reception/reports/appointments.csv");
+      } else {
+        api.download("GET /api/doctor/reports/visits.csv", f.doctorToken(), "/api/doctor/reports/visits.csv");
+      }
+    }
+  };
+
+  private final String key;
+  private final int defaultWeight;
+
+  Scenario(String key, int defaultWeight) {
+    this.key = key;
+    this.defaultWeight = defaultWeight;
+  }
+
+  public String key() { return key; }
+  public int defaultWeight() { return defaultWeight; }
+
+  abstract void run(ApiClient api, Fixture f, RandomGenerator rnd);
+
+  static long pick(Fixture f, RandomGenerator rnd) {
+    return f.patientIds().get(rnd.nextInt(f.patientIds().size()));
+  }
+
+  public static Scenario byKey(String key) {
+    for (Scenario s : values()) {
+      if (s.key.equals(key)) {
+        return s;
+      }
+    }
+    throw new IllegalArgumentException("Unknown scenario: " + key);
+  }
+}